@@ -0,0 +1,126 @@
+package com.genpt.api.benchmark;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generator of synthetic products.xml catalogs, from a few thousand up to tens of millions of products.
+ * <p>
+ * Products are written one at a time, so catalogs larger than the heap can be generated. Values are drawn
+ * from a seeded {@link Random}, so the same arguments always produce the same file. Categories and companies
+ * repeat a lot (like in real catalogs), names repeat occasionally and part numbers follow the
+ * {@code 2303-E1A-G-M-W209B-VM} pattern.
+ * <p>
+ * Usage: {@code CatalogGenerator <output file> <number of products> [seed]}
+ */
+public final class CatalogGenerator {
+
+    private static final String[] ADJECTIVES = {
+            "red", "green", "small", "large", "heavy", "light", "steel", "plastic", "rubber", "brass",
+            "front", "rear", "left", "right", "upper", "lower", "inner", "outer", "spare", "premium"
+    };
+
+    private static final String[] NOUNS = {
+            "apple", "orange", "glass", "bolt", "nut", "washer", "gasket", "filter", "hose", "clamp",
+            "bearing", "spring", "valve", "pump", "belt", "bracket", "sensor", "switch", "fuse", "relay"
+    };
+
+    private static final int CATEGORIES = 40;
+    private static final int COMPANIES = 300;
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private CatalogGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CatalogGenerator <output file> <number of products> [seed]");
+            System.exit(1);
+        }
+        Path file = Path.of(args[0]);
+        int count = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+        write(file, count, seed);
+        System.out.printf("Written %d products to %s (%d bytes)%n", count, file, Files.size(file));
+    }
+
+    /**
+     * Writes a catalog with the given number of products.
+     *
+     * @param file the file to write, replaced if it exists.
+     * @param count number of products.
+     * @param seed seed of the generated values.
+     */
+    public static void write(Path file, int count, long seed) throws IOException {
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            write(outputStream, count, seed);
+        }
+    }
+
+    /**
+     * Writes a catalog with the given number of products to the stream. The stream is not closed.
+     */
+    public static void write(OutputStream outputStream, int count, long seed) throws IOException {
+        Random random = new Random(seed);
+        try {
+            XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(outputStream, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("Products");
+            for (int i = 1; i <= count; i++) {
+                writer.writeCharacters("\n    ");
+                writer.writeStartElement("Product");
+                writer.writeAttribute("id", Integer.toString(i));
+                writeElement(writer, "Name", name(random));
+                writeElement(writer, "Category", "category-" + random.nextInt(CATEGORIES));
+                writeElement(writer, "PartNumberNR", partNumber(random));
+                writeElement(writer, "CompanyName", "Company" + random.nextInt(COMPANIES));
+                writeElement(writer, "Active", Boolean.toString(random.nextInt(10) < 8));
+                writer.writeCharacters("\n    ");
+                writer.writeEndElement();
+            }
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Error while writing catalog", e);
+        }
+    }
+
+    /**
+     * @return a name of one of the generated products, e.g. to look up existing products in benchmarks.
+     */
+    public static String name(Random random) {
+        return ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)]
+                + " " + random.nextInt(1000);
+    }
+
+    private static String partNumber(Random random) {
+        return String.format("%04d-%c%d%c-%c-%c-%c%03d%c-%c%c",
+                random.nextInt(10000), letter(random), random.nextInt(10), letter(random),
+                letter(random), letter(random), letter(random), random.nextInt(1000), letter(random),
+                letter(random), letter(random));
+    }
+
+    private static char letter(Random random) {
+        return LETTERS.charAt(random.nextInt(LETTERS.length()));
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        writer.writeCharacters("\n        ");
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+}
@@ -0,0 +1,70 @@
+package com.genpt.api.benchmark;
+
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.mapper.ProductMapper;
+import com.genpt.api.model.Product;
+import com.genpt.api.parser.ProductXmlParser;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic catalog shared by the benchmarks of one trial.
+ * The size is set with {@code -p productCount=...}, e.g. {@code -p productCount=10000000}.
+ *
+ * @see CatalogGenerator
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+
+    @Param({"10000", "100000"})
+    public int productCount;
+
+    public Path xmlFile;
+    public List<Product> products;
+    public List<ProductDTO> productDTOs;
+    public ProductCatalog catalog;
+
+    /** Name of a product present in the catalog. */
+    public String existingName;
+
+    /** Name that is not present in the catalog. */
+    public String missingName = "no such product";
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        xmlFile = Files.createTempFile("benchmark-products-", ".xml");
+        CatalogGenerator.write(xmlFile, productCount, 42L);
+
+        products = new ArrayList<>(productCount);
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(xmlFile))) {
+            new ProductXmlParser().parse(inputStream, products::add);
+        }
+        productDTOs = products.stream().map(new ProductMapper()).toList();
+        catalog = ProductCatalog.of(1, productDTOs, "benchmark", Instant.now());
+        existingName = products.get(new Random(7).nextInt(products.size())).getName();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(xmlFile);
+    }
+
+    public InputStream openXmlFile() throws IOException {
+        return new BufferedInputStream(Files.newInputStream(xmlFile));
+    }
+}
@@ -0,0 +1,147 @@
+package com.genpt.api.benchmark;
+
+import com.genpt.api.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the running application under mixed traffic, with requests handled by Tomcat's pool of platform
+ * threads compared to virtual threads ({@code spring.threads.virtual.enabled}, needs Java 21).
+ * <p>
+ * Clients download {@code /all}, replace the catalog with {@code /update-file} (so {@code /all} has to serialize
+ * the new version) and download {@code /xml} slowly. Slow downloads hold a platform thread for as long as the client
+ * takes; {@code maxThreads} limits the pool, so that a few dozen clients are enough to show the effect.
+ * Run on Java 21 to compare both; on Java 17 only {@code -p threads=platform} can run.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+    private static final String BOUNDARY = "benchmark-boundary";
+
+    /** Delay after every buffer read by a slow client. */
+    private static final long SLOW_CLIENT_DELAY_MILLIS = 1;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"10000"})
+    public int productCount;
+
+    /** Size of Tomcat's thread pool, ignored with virtual threads. */
+    @Param({"16"})
+    public int maxThreads;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI baseUri;
+    private byte[] uploads;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        boolean virtual = threads.equals("virtual");
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21, run with -p threads=platform");
+        }
+        directory = Files.createTempDirectory("benchmark-load-");
+        Path xmlFile = directory.resolve("products.xml");
+        CatalogGenerator.write(xmlFile, productCount, 42L);
+
+        ByteArrayOutputStream upload = new ByteArrayOutputStream();
+        upload.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"products.xml\"\r\n"
+                + "Content-Type: application/xml\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        CatalogGenerator.write(upload, productCount, 43L);
+        upload.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        uploads = upload.toByteArray();
+
+        context = SpringApplication.run(Application.class,
+                "--server.port=0",
+                "--files.xml.products=" + xmlFile.toAbsolutePath(),
+                "--files.xml.watch.enabled=false",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--server.tomcat.threads.max=" + maxThreads,
+                "--logging.level.root=warn");
+        String port = context.getEnvironment().getProperty("local.server.port");
+        baseUri = URI.create("http://localhost:" + port + "/api/v1/products/");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(16)
+    public int all() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("all")).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int updateFile() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("update-file"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(uploads))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(16)
+    public long slowXml() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("xml")).build();
+        long read = 0;
+        try (InputStream body = client.send(request, HttpResponse.BodyHandlers.ofInputStream()).body()) {
+            byte[] buffer = new byte[1 << 16];
+            for (int n = body.read(buffer); n >= 0; n = body.read(buffer)) {
+                read += n;
+                Thread.sleep(SLOW_CLIENT_DELAY_MILLIS);
+            }
+        }
+        return read;
+    }
+}
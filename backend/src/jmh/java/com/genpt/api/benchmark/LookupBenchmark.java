@@ -0,0 +1,55 @@
+package com.genpt.api.benchmark;
+
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product lookups by name: the linear scan of the original getProductByName compared to
+ * the {@link com.genpt.api.index.ProductIndex}, for names that exist and names that do not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Benchmark
+    public List<Product> linearScanHit(CatalogState state) {
+        return linearScan(state.products, state.existingName);
+    }
+
+    @Benchmark
+    public List<Product> linearScanMiss(CatalogState state) {
+        return linearScan(state.products, state.missingName);
+    }
+
+    @Benchmark
+    public List<ProductDTO> indexHit(CatalogState state) {
+        return state.catalog.getIndex().findByName(state.existingName);
+    }
+
+    @Benchmark
+    public List<ProductDTO> indexMiss(CatalogState state) {
+        return state.catalog.getIndex().findByName(state.missingName);
+    }
+
+    private static List<Product> linearScan(List<Product> products, String productName) {
+        return products.stream()
+                .filter(product -> product.getName().equals(productName))
+                .toList();
+    }
+}
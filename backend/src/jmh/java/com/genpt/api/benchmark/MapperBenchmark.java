@@ -0,0 +1,42 @@
+package com.genpt.api.benchmark;
+
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.mapper.ProductMapper;
+import com.genpt.api.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of parsed {@link Product}s to {@link ProductDTO}s with {@link ProductMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    private final ProductMapper productMapper = new ProductMapper();
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ProductDTO mapOne(CatalogState state) {
+        return productMapper.apply(state.products.get(0));
+    }
+
+    @Benchmark
+    public List<ProductDTO> mapAll(CatalogState state) {
+        return state.products.stream().map(productMapper).toList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.genpt.api.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.genpt.api.model.Product;
+import com.genpt.api.parser.ParallelProductXmlParser;
+import com.genpt.api.parser.ProductXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the products XML file: binding the whole file into a list (with a new or a shared
+ * {@link XmlMapper}) compared to the streaming {@link ProductXmlParser} and the chunked
+ * {@link ParallelProductXmlParser} (one thread per available processor).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    private static final TypeReference<List<Product>> PRODUCTS_TYPE = new TypeReference<>() {};
+
+    private final XmlMapper sharedXmlMapper = new XmlMapper();
+    private final ProductXmlParser productXmlParser = new ProductXmlParser();
+    private ParallelProductXmlParser parallelProductXmlParser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // smaller chunks than in the application, so the smaller catalogs are split as well
+        parallelProductXmlParser = new ParallelProductXmlParser(productXmlParser, 0, 1 << 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parallelProductXmlParser.shutdown();
+    }
+
+    /** Cost of the mapper created on every call by the original parseXmlFile. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public XmlMapper newXmlMapper() {
+        return new XmlMapper();
+    }
+
+    /** The original implementation: a new mapper binding the whole file into a list. */
+    @Benchmark
+    public List<Product> bindWholeFileNewMapper(CatalogState state) throws IOException {
+        return new XmlMapper().readValue(state.xmlFile.toFile(), PRODUCTS_TYPE);
+    }
+
+    @Benchmark
+    public List<Product> bindWholeFileSharedMapper(CatalogState state) throws IOException {
+        return sharedXmlMapper.readValue(state.xmlFile.toFile(), PRODUCTS_TYPE);
+    }
+
+    @Benchmark
+    public long streamingParse(CatalogState state, Blackhole blackhole) throws IOException {
+        try (InputStream inputStream = state.openXmlFile()) {
+            return productXmlParser.parse(inputStream, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public long parallelParse(CatalogState state, Blackhole blackhole) throws IOException {
+        return parallelProductXmlParser.parse(state.xmlFile, blackhole::consume);
+    }
+}
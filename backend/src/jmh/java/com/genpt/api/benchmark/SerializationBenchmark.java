@@ -0,0 +1,103 @@
+package com.genpt.api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genpt.api.metrics.CatalogMetrics;
+import com.genpt.api.util.ApiResponse;
+import com.genpt.api.util.ProductsJsonWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the GET /all response: the whole {@link ApiResponse} serialized per request
+ * compared to the pre-serialized products written by {@link ProductsJsonWriter}.
+ * Output is discarded, so only serialization is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final String MESSAGE = "Fetched all records from the file.";
+
+    /** Configured like the ObjectMapper of the application. */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ProductsJsonWriter productsJsonWriter = new ProductsJsonWriter(objectMapper,
+            new CatalogMetrics(new SimpleMeterRegistry()));
+    private final DiscardingResponse response = new DiscardingResponse();
+
+    @Setup
+    public void setUp(CatalogState state) {
+        // serialize the products of this catalog version once, like the first request does
+        productsJsonWriter.getProductsJson(state.catalog);
+    }
+
+    @Benchmark
+    public void apiResponsePerRequest(CatalogState state) throws IOException {
+        ApiResponse<?> apiResponse = ApiResponse.builder()
+                .message(MESSAGE)
+                .data(Map.of("products", state.productDTOs))
+                .build();
+        objectMapper.writeValue(OutputStream.nullOutputStream(), apiResponse);
+    }
+
+    @Benchmark
+    public void preSerialized(CatalogState state) throws IOException {
+        productsJsonWriter.write(state.catalog, MESSAGE, response);
+    }
+
+    /**
+     * Response whose body is discarded.
+     */
+    private static final class DiscardingResponse extends HttpServletResponseWrapper {
+
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        DiscardingResponse() {
+            super(new MockHttpServletResponse());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.genpt.api.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genpt.api.dto.ProductChangesDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of the changes applied to a catalog since its XML file was last written
+ * ({@code products.xml} → {@code products.xml.changes}).
+ * <p>
+ * Every batch of changes is appended as one line of JSON and forced to disk before it is applied,
+ * so a restart replays the batches on top of the XML file and ends up with the same catalog.
+ * The log is compacted by writing the changed catalog back into the XML file and deleting the log.
+ * <p>
+ * A crash while appending can only leave an incomplete last line, which is ignored when the log is read.
+ *
+ * @see com.genpt.api.service.ProductService
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class CatalogChangeLog {
+
+    public static final String CHANGE_LOG_EXTENSION = ".changes";
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param xmlFile the XML file.
+     * @return {@code true} if changes were logged since the XML file was last written.
+     */
+    public boolean exists(Path xmlFile) {
+        return Files.isRegularFile(changeLogPath(xmlFile));
+    }
+
+    /**
+     * Appends a batch of changes and waits until it is written to disk. Appends must not run concurrently.
+     *
+     * @param xmlFile the XML file the changes apply to.
+     * @param changes the changes.
+     * @throws IOException if the changes cannot be written.
+     */
+    public void append(Path xmlFile, ProductChangesDTO changes) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(changes) + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(changeLogPath(xmlFile),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.position(channel.size());
+            if (!endsWithNewLine(channel)) {
+                // an incomplete batch left by a crash must not be continued by this one
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Reads all logged batches of changes in the order they were applied.
+     *
+     * @param xmlFile the XML file the changes apply to.
+     * @return the batches of changes, empty if there is no log.
+     * @throws IOException if the log cannot be read or a batch other than the last one is corrupt.
+     */
+    public List<ProductChangesDTO> read(Path xmlFile) throws IOException {
+        Path changeLog = changeLogPath(xmlFile);
+        if (!Files.isRegularFile(changeLog)) {
+            return List.of();
+        }
+        List<ProductChangesDTO> changes = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(changeLog, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                try {
+                    if (!line.isBlank()) {
+                        changes.add(objectMapper.readValue(line, ProductChangesDTO.class));
+                    }
+                }
+                catch (JsonProcessingException e) {
+                    if (next != null) {
+                        throw new IOException("Corrupt change log " + changeLog + " at batch " + changes.size(), e);
+                    }
+                    log.warn("Ignoring incomplete last batch of change log {}", changeLog, e);
+                }
+                line = next;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Deletes the log, after its changes were written into the XML file.
+     *
+     * @param xmlFile the XML file the changes apply to.
+     * @throws IOException if the log cannot be deleted.
+     */
+    public void delete(Path xmlFile) throws IOException {
+        Files.deleteIfExists(changeLogPath(xmlFile));
+    }
+
+    private static boolean endsWithNewLine(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return true;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+
+    private static Path changeLogPath(Path xmlFile) {
+        return xmlFile.resolveSibling(xmlFile.getFileName() + CHANGE_LOG_EXTENSION);
+    }
+}
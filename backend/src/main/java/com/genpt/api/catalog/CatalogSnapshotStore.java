@@ -0,0 +1,369 @@
+package com.genpt.api.catalog;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * Stores the {@link ProductColumns} of a parsed XML file in a binary snapshot file next to it
+ * ({@code products.xml} → {@code products.xml.snapshot}), so that a restart can load the catalog
+ * without parsing the XML again.
+ * <p>
+ * The snapshot holds the SHA-256 hash of the XML content it was built from and is only used
+ * if the hash still matches, so an XML file changed while the application was not running is parsed again.
+ * The columns are written as length-prefixed primitive arrays and read back with bulk copies,
+ * which is bounded by disk speed rather than by parsing. A CRC32C checksum of everything before it ends the file,
+ * so a torn or corrupted snapshot is detected while reading and the XML is parsed instead.
+ * <p>
+ * Snapshots are an optimization only: a missing, outdated or unreadable snapshot is ignored
+ * and a snapshot that cannot be written (e.g. on a read-only file system) is logged and skipped.
+ *
+ * @see com.genpt.api.service.ProductService
+ */
+@Log4j2
+@Component
+public class CatalogSnapshotStore {
+
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    /** "GPCS", marks the file as a catalog snapshot. */
+    private static final int MAGIC = 0x47504353;
+
+    /** Version of the file layout, snapshots with another version are ignored. */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final boolean enabled;
+
+    public CatalogSnapshotStore(@Value("${files.xml.snapshots:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param xmlFile the XML file.
+     * @return {@code true} if there is a snapshot of the XML file which may be used.
+     */
+    public boolean exists(Path xmlFile) {
+        return enabled && Files.isRegularFile(snapshotPath(xmlFile));
+    }
+
+    /**
+     * Reads the snapshot of the XML file.
+     *
+     * @param xmlFile the XML file.
+     * @param contentHash hex encoded SHA-256 hash of the current XML content.
+     * @return the columns, or empty if there is no snapshot, it was built from other content or it cannot be read.
+     */
+    public Optional<ProductColumns> read(Path xmlFile, String contentHash) {
+        if (!exists(xmlFile)) {
+            return Optional.empty();
+        }
+        Path snapshot = snapshotPath(xmlFile);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            Input input = new Input(channel);
+            if (input.getInt() != MAGIC || input.getInt() != FORMAT_VERSION) {
+                log.info("Ignoring snapshot {} with unknown format", snapshot);
+                return Optional.empty();
+            }
+            String snapshotHash = new String(input.getBytes(), StandardCharsets.UTF_8);
+            if (!snapshotHash.equals(contentHash)) {
+                log.info("Ignoring snapshot {}, the XML file has changed", snapshot);
+                return Optional.empty();
+            }
+
+            int size = input.getInt();
+            long[] ids = input.getLongs(size);
+            BitSet missingIds = BitSet.valueOf(input.getLongs(input.getInt()));
+            BitSet active = BitSet.valueOf(input.getLongs(input.getInt()));
+            ProductColumns.StringColumn names = readColumn(input, size);
+            ProductColumns.StringColumn partNumbers = readColumn(input, size);
+            ProductColumns.StringColumn categories = readColumn(input, size);
+            ProductColumns.StringColumn companyNames = readColumn(input, size);
+            input.verifyChecksum();
+            log.info("Read snapshot {} with {} products", snapshot, size);
+            return Optional.of(new ProductColumns(size, ids, missingIds, names, partNumbers, categories, companyNames,
+                    active));
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable snapshot {}", snapshot, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the snapshot of the XML file, replacing an existing one. The snapshot is written to a temporary file,
+     * forced to disk and moved in place, so a crash never leaves a partially written snapshot behind.
+     *
+     * @param xmlFile the XML file the columns were read from.
+     * @param columns the columns.
+     * @param contentHash hex encoded SHA-256 hash of the XML content.
+     */
+    public void write(Path xmlFile, ProductColumns columns, String contentHash) {
+        if (!enabled) {
+            return;
+        }
+        Path snapshot = snapshotPath(xmlFile);
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(snapshot.toAbsolutePath().getParent(),
+                    snapshot.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                Output output = new Output(channel);
+                output.putInt(MAGIC);
+                output.putInt(FORMAT_VERSION);
+                output.putBytes(contentHash.getBytes(StandardCharsets.UTF_8));
+
+                output.putInt(columns.size);
+                output.putLongs(columns.ids);
+                long[] missingIds = columns.missingIds.toLongArray();
+                output.putInt(missingIds.length);
+                output.putLongs(missingIds);
+                long[] active = columns.active.toLongArray();
+                output.putInt(active.length);
+                output.putLongs(active);
+                writeColumn(output, columns.names);
+                writeColumn(output, columns.partNumbers);
+                writeColumn(output, columns.categories);
+                writeColumn(output, columns.companyNames);
+                output.finish();
+                channel.force(true);
+            }
+            Files.move(tempFile, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Written snapshot {} with {} products", snapshot, columns.size);
+        }
+        catch (IOException e) {
+            log.warn("Could not write snapshot {}", snapshot, e);
+        }
+        finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    private static Path snapshotPath(Path xmlFile) {
+        return xmlFile.resolveSibling(xmlFile.getFileName() + SNAPSHOT_EXTENSION);
+    }
+
+    private static void writeColumn(Output output, ProductColumns.StringColumn column) throws IOException {
+        output.putInts(column.codes);
+        output.putInt(column.offsets.length);
+        output.putInts(column.offsets);
+        output.putBytes(column.values);
+    }
+
+    private static ProductColumns.StringColumn readColumn(Input input, int size) throws IOException {
+        int[] codes = input.getInts(size);
+        int[] offsets = input.getInts(input.getInt());
+        byte[] values = input.getBytes();
+        return new ProductColumns.StringColumn(codes, values, offsets);
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            log.warn("Could not delete temporary file {}", path, e);
+        }
+    }
+
+    /**
+     * Writes primitives and arrays through a reused buffer, arrays are copied in bulk.
+     * Every byte written is added to a checksum, which {@link #finish()} appends.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32C checksum = new CRC32C();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int offset = 0; offset < values.length; ) {
+                ensureRemaining(Integer.BYTES);
+                int count = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+        }
+
+        void putLongs(long[] values) throws IOException {
+            for (int offset = 0; offset < values.length; ) {
+                ensureRemaining(Long.BYTES);
+                int count = Math.min(values.length - offset, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                offset += count;
+            }
+        }
+
+        /**
+         * Writes the length of the array followed by its content.
+         */
+        void putBytes(byte[] values) throws IOException {
+            putInt(values.length);
+            for (int offset = 0; offset < values.length; ) {
+                ensureRemaining(1);
+                int count = Math.min(values.length - offset, buffer.remaining());
+                buffer.put(values, offset, count);
+                offset += count;
+            }
+        }
+
+        /**
+         * Writes the checksum of everything written so far and flushes.
+         */
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Reads what {@link Output} has written. Bytes are added to a checksum once they have been read.
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        private final CRC32C checksum = new CRC32C();
+        /** Start of the bytes in the buffer which have been read but not yet added to the checksum. */
+        private int unchecked;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        int getInt() throws IOException {
+            ensureAvailable(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        int[] getInts(int length) throws IOException {
+            checkLength(length, Integer.BYTES);
+            int[] values = new int[length];
+            for (int offset = 0; offset < length; ) {
+                ensureAvailable(Integer.BYTES);
+                int count = Math.min(length - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+            return values;
+        }
+
+        long[] getLongs(int length) throws IOException {
+            checkLength(length, Long.BYTES);
+            long[] values = new long[length];
+            for (int offset = 0; offset < length; ) {
+                ensureAvailable(Long.BYTES);
+                int count = Math.min(length - offset, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                offset += count;
+            }
+            return values;
+        }
+
+        /**
+         * Reads an array written by {@link Output#putBytes(byte[])}.
+         */
+        byte[] getBytes() throws IOException {
+            int length = getInt();
+            checkLength(length, 1);
+            byte[] values = new byte[length];
+            for (int offset = 0; offset < values.length; ) {
+                ensureAvailable(1);
+                int count = Math.min(values.length - offset, buffer.remaining());
+                buffer.get(values, offset, count);
+                offset += count;
+            }
+            return values;
+        }
+
+        /**
+         * Reads the checksum written by {@link Output#finish()} and compares it with the checksum of the bytes read.
+         */
+        void verifyChecksum() throws IOException {
+            updateChecksum();
+            int expected = (int) checksum.getValue();
+            if (getInt() != expected) {
+                throw new IOException("Corrupt snapshot, checksum mismatch");
+            }
+            if (buffer.hasRemaining() || channel.position() != channel.size()) {
+                throw new IOException("Corrupt snapshot, unexpected data after the checksum");
+            }
+        }
+
+        /**
+         * Rejects lengths that cannot be right before allocating an array for them.
+         */
+        private void checkLength(int length, int elementBytes) throws IOException {
+            if (length < 0 || (long) length * elementBytes > channel.size()) {
+                throw new IOException("Corrupt snapshot, invalid array length: " + length);
+            }
+        }
+
+        /**
+         * Refills the buffer until it holds at least the given number of bytes.
+         */
+        private void ensureAvailable(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            updateChecksum();
+            buffer.compact();
+            unchecked = 0;
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of snapshot");
+                }
+            }
+            buffer.flip();
+        }
+
+        private void updateChecksum() {
+            checksum.update(buffer.duplicate().position(unchecked).limit(buffer.position()));
+            unchecked = buffer.position();
+        }
+    }
+}
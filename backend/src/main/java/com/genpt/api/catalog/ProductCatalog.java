@@ -0,0 +1,197 @@
+package com.genpt.api.catalog;
+
+import com.genpt.api.dto.ProductChangesDTO;
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.index.FacetIndex;
+import com.genpt.api.index.PartNumberTrie;
+import com.genpt.api.index.ProductIndex;
+import com.genpt.api.index.SearchIndex;
+import com.genpt.api.util.Lazy;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a fully loaded products file, possibly with changes applied to it
+ * (see {@link #withChanges}).
+ * <p>
+ * A snapshot is built completely (parsed, mapped and indexed) before it is published,
+ * so readers holding a reference always see one consistent version of the catalog.
+ * Products are stored in {@link ProductColumns}, not as one object per product.
+ *
+ * @see com.genpt.api.service.ProductService
+ * @see ProductIndex
+ */
+@Getter
+public final class ProductCatalog {
+
+    /** Monotonically increasing number of the loaded version. */
+    private final long version;
+
+    /** Index over all products of this version. */
+    private final ProductIndex index;
+
+    /** Hex encoded SHA-256 hash of the XML content this version was loaded from. */
+    private final String contentHash;
+
+    /** Modification time of the XML content. */
+    private final Instant lastModified;
+
+    /** Time at which this version was loaded. */
+    private final Instant loadedAt;
+
+    /** Full-text index, built on first search. */
+    @Getter(AccessLevel.NONE)
+    private final Lazy<SearchIndex> searchIndex;
+
+    /** Part number trie, built on first part number query. */
+    @Getter(AccessLevel.NONE)
+    private final Lazy<PartNumberTrie> partNumberTrie;
+
+    /** Bitmap index for faceted queries, built on first query. */
+    @Getter(AccessLevel.NONE)
+    private final Lazy<FacetIndex> facetIndex;
+
+    private ProductCatalog(long version, ProductIndex index, String contentHash, Instant lastModified) {
+        this.version = version;
+        this.index = index;
+        this.contentHash = contentHash;
+        this.lastModified = lastModified;
+        this.loadedAt = Instant.now();
+        this.searchIndex = Lazy.of(() -> SearchIndex.of(index.getProducts()));
+        this.partNumberTrie = Lazy.of(() -> PartNumberTrie.of(index.getProducts()));
+        this.facetIndex = Lazy.of(() -> FacetIndex.of(index));
+    }
+
+    /**
+     * Builds a new snapshot of the given products.
+     *
+     * @param version version number of the snapshot.
+     * @param products products in document order.
+     * @param contentHash hash of the XML content the products were read from.
+     * @param lastModified modification time of the XML content.
+     * @return the snapshot.
+     */
+    public static ProductCatalog of(long version, List<ProductDTO> products, String contentHash, Instant lastModified) {
+        return of(version, ProductColumns.of(products), contentHash, lastModified);
+    }
+
+    /**
+     * Builds a new snapshot of the given product columns.
+     *
+     * @param version version number of the snapshot.
+     * @param columns products in document order.
+     * @param contentHash hash of the XML content the products were read from.
+     * @param lastModified modification time of the XML content.
+     * @return the snapshot.
+     */
+    public static ProductCatalog of(long version, ProductColumns columns, String contentHash, Instant lastModified) {
+        return new ProductCatalog(version, ProductIndex.of(columns), contentHash, lastModified);
+    }
+
+    /**
+     * Builds the next snapshot by applying a batch of changes to this one, without reading the XML file.
+     * Deletes are applied first. An upserted product replaces the first product with its id (other products
+     * with that id are removed) or is appended if there is none. The columns of this snapshot are patched
+     * (see {@link ProductColumns#withChanges}) and indexed again, lazy indexes are built again on first use.
+     *
+     * @param version version number of the new snapshot.
+     * @param changes the changes, with non-null lists and ids.
+     * @param contentHash hash identifying the changed content.
+     * @param lastModified time of the changes.
+     * @return the new snapshot, this snapshot is not modified.
+     */
+    public ProductCatalog withChanges(long version, ProductChangesDTO changes, String contentHash,
+                                      Instant lastModified) {
+        BitSet removed = new BitSet();
+        for (Long id : changes.getDelete()) {
+            for (int position : index.findPositionsById(id)) {
+                removed.set(position);
+            }
+        }
+
+        Map<Integer, ProductDTO> replaced = new HashMap<>();
+        Map<Long, ProductDTO> added = new LinkedHashMap<>();
+        for (ProductDTO product : changes.getUpsert()) {
+            int[] positions = Arrays.stream(index.findPositionsById(product.getId()))
+                    .filter(position -> !removed.get(position))
+                    .toArray();
+            if (positions.length == 0) {
+                added.put(product.getId(), product);
+                continue;
+            }
+            replaced.put(positions[0], product);
+            for (int i = 1; i < positions.length; i++) {
+                removed.set(positions[i]);
+            }
+        }
+
+        ProductColumns columns = getColumns().withChanges(replaced, removed, List.copyOf(added.values()));
+        return of(version, columns, contentHash, lastModified);
+    }
+
+    /**
+     * @return strong entity tag of this version, derived from the content hash.
+     */
+    public String getETag() {
+        return "\"" + contentHash + "\"";
+    }
+
+    /**
+     * Returns the full-text index of this version. The index is built on the first call
+     * and shared by all later searches.
+     *
+     * @return the search index.
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex.get();
+    }
+
+    /**
+     * Returns the part number trie of this version. The trie is built on the first call
+     * and shared by all later part number queries.
+     *
+     * @return the part number trie.
+     */
+    public PartNumberTrie getPartNumberTrie() {
+        return partNumberTrie.get();
+    }
+
+    /**
+     * Returns the facet index of this version. The index is built on the first call
+     * and shared by all later faceted queries.
+     *
+     * @return the facet index.
+     */
+    public FacetIndex getFacetIndex() {
+        return facetIndex.get();
+    }
+
+    /**
+     * @return the columns holding all products.
+     */
+    public ProductColumns getColumns() {
+        return index.getColumns();
+    }
+
+    /**
+     * @return all products in document order, as a read-only view over the columns.
+     */
+    public List<ProductDTO> getProducts() {
+        return index.getProducts();
+    }
+
+    /**
+     * @return the number of products.
+     */
+    public int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,623 @@
+package com.genpt.api.catalog;
+
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.util.Lazy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Immutable, column-oriented storage of all products of a catalog.
+ * <p>
+ * Every field is kept in its own array instead of one object per product: ids in a {@code long[]},
+ * the active flags in a {@link BitSet} and every text field as {@code int} codes into a dictionary of its
+ * distinct values (see {@link StringColumn}). Repetitive values like {@code category} and {@code companyName}
+ * are stored once, and even unique values like part numbers cost their UTF-8 bytes plus two {@code int}s instead
+ * of a {@code String} object. A catalog costs a few primitive arrays instead of a {@code Product},
+ * a {@code ProductDTO} and a boxed {@code Long} per product.
+ * <p>
+ * Products are addressed by their position in document order. {@link #asList()} exposes them as a list of
+ * {@link ProductDTO}s that are created on access, so the list can be paged and serialized like any other list.
+ *
+ * @see ProductCatalog
+ * @see com.genpt.api.index.ProductIndex
+ */
+public final class ProductColumns {
+
+    /** Code of a {@code null} value in a {@link StringColumn}. */
+    public static final int NO_CODE = -1;
+
+    // columns are package-private, so that CatalogSnapshotStore can write and read them as they are
+
+    final int size;
+    final long[] ids;
+
+    /** Positions of products without an id, {@code ids} holds {@code 0} for them. */
+    final BitSet missingIds;
+
+    final StringColumn names;
+    final StringColumn partNumbers;
+    final StringColumn categories;
+    final StringColumn companyNames;
+    final BitSet active;
+
+    private final List<ProductDTO> view = new ProductList();
+
+    ProductColumns(int size, long[] ids, BitSet missingIds, StringColumn names, StringColumn partNumbers,
+                   StringColumn categories, StringColumn companyNames, BitSet active) {
+        this.size = size;
+        this.ids = ids;
+        this.missingIds = missingIds;
+        this.names = names;
+        this.partNumbers = partNumbers;
+        this.categories = categories;
+        this.companyNames = companyNames;
+        this.active = active;
+    }
+
+    /**
+     * Stores the given products in columns.
+     *
+     * @param products products in document order.
+     * @return the columns.
+     */
+    public static ProductColumns of(List<ProductDTO> products) {
+        Builder builder = builder();
+        products.forEach(builder::add);
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of products.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return all products in document order, as a read-only list creating the {@link ProductDTO}s on access.
+     */
+    public List<ProductDTO> asList() {
+        return view;
+    }
+
+    /**
+     * @param position position of the product in document order.
+     * @return the product at the given position.
+     */
+    public ProductDTO get(int position) {
+        return new ProductDTO(getId(position), names.get(position), categories.get(position),
+                partNumbers.get(position), companyNames.get(position), active.get(position));
+    }
+
+    public Long getId(int position) {
+        return missingIds.get(position) ? null : ids[position];
+    }
+
+    public boolean isActive(int position) {
+        return active.get(position);
+    }
+
+    public StringColumn names() {
+        return names;
+    }
+
+    public StringColumn partNumbers() {
+        return partNumbers;
+    }
+
+    public StringColumn categories() {
+        return categories;
+    }
+
+    public StringColumn companyNames() {
+        return companyNames;
+    }
+
+    /**
+     * Returns new columns with some products replaced, removed or appended, see {@link Splicer}.
+     *
+     * @param replaced products replacing the product at the given position.
+     * @param removed positions of the products to remove.
+     * @param added products to append.
+     * @return the changed columns, these columns are not modified.
+     */
+    public ProductColumns withChanges(Map<Integer, ProductDTO> replaced, BitSet removed, List<ProductDTO> added) {
+        Splicer splicer = splicer();
+        for (int position = 0; position < size; position++) {
+            if (removed.get(position)) {
+                continue;
+            }
+            ProductDTO replacement = replaced.isEmpty() ? null : replaced.get(position);
+            if (replacement == null) {
+                splicer.copy(position, position + 1);
+            }
+            else {
+                splicer.add(replacement);
+            }
+        }
+        added.forEach(splicer::add);
+        return splicer.build();
+    }
+
+    /**
+     * @return a splicer building new columns from products of these columns and new products.
+     */
+    public Splicer splicer() {
+        return new Splicer();
+    }
+
+    /**
+     * Dictionary encoded text column.
+     * <p>
+     * The distinct values are sorted and packed as UTF-8 into a single byte array, the code of a value is its
+     * position in that order. Every product stores the code of its value, or {@link #NO_CODE} for {@code null}.
+     * The code of a value is found in a hash table of codes (four bytes per slot, no {@code String} keys),
+     * which compares the UTF-8 bytes of the value with the dictionary, so a lookup decodes nothing.
+     */
+    public static final class StringColumn {
+        final int[] codes;
+        final byte[] values;
+
+        /** Start of the value with code {@code i} in {@link #values}, with the end of all values as last element. */
+        final int[] offsets;
+
+        /**
+         * Open addressing hash table from values to codes for {@link #find}, built on the first lookup: slots hold
+         * codes (or {@link #NO_CODE}), probed linearly from the hash of the UTF-8 bytes of a value.
+         */
+        private final Lazy<int[]> table = Lazy.of(this::buildTable);
+
+        StringColumn(int[] codes, byte[] values, int[] offsets) {
+            this.codes = codes;
+            this.values = values;
+            this.offsets = offsets;
+        }
+
+        /**
+         * @return the value of the product at the given position.
+         */
+        public String get(int position) {
+            int code = codes[position];
+            return code == NO_CODE ? null : value(code);
+        }
+
+        /**
+         * @return the code of the value of the product at the given position, or {@link #NO_CODE}.
+         */
+        public int code(int position) {
+            return codes[position];
+        }
+
+        /**
+         * @return the value with the given code.
+         */
+        public String value(int code) {
+            return new String(values, offsets[code], offsets[code + 1] - offsets[code], StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the code of the given value, or {@link #NO_CODE} if no product has it.
+         */
+        public int find(String value) {
+            if (value == null) {
+                return NO_CODE;
+            }
+            byte[] key = value.getBytes(StandardCharsets.UTF_8);
+            return find(key, hash(key));
+        }
+
+        /**
+         * Finds the code of an already encoded and hashed value, e.g. after checking the hash against a filter.
+         *
+         * @param key the UTF-8 encoding of the value.
+         * @param hash the {@link #hash(byte[])} of the key.
+         * @return the code of the value, or {@link #NO_CODE} if no product has it.
+         */
+        public int find(byte[] key, long hash) {
+            // compares the encoded value with the bytes in the dictionary, no value is decoded
+            int[] slots = table.get();
+            int mask = slots.length - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                int code = slots[slot];
+                if (code == NO_CODE || Arrays.equals(values, offsets[code], offsets[code + 1], key, 0, key.length)) {
+                    return code;
+                }
+            }
+        }
+
+        private int[] buildTable() {
+            // at most half of the slots are used, so that probe sequences stay short
+            int[] slots = new int[Integer.highestOneBit(Math.max(1, cardinality()) * 4 - 1)];
+            Arrays.fill(slots, NO_CODE);
+            int mask = slots.length - 1;
+            for (int code = 0; code < cardinality(); code++) {
+                int slot = (int) hash(code) & mask;
+                while (slots[slot] != NO_CODE) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = code;
+            }
+            return slots;
+        }
+
+        /**
+         * @return the number of distinct values, codes are {@code 0} to {@code cardinality() - 1}.
+         */
+        public int cardinality() {
+            return offsets.length - 1;
+        }
+
+        /**
+         * @return 64-bit hash of the value with the given code, equal to {@link #hash(byte[])} of its encoding.
+         */
+        public long hash(int code) {
+            return hash(values, offsets[code], offsets[code + 1]);
+        }
+
+        /**
+         * @param key the UTF-8 encoding of a value.
+         * @return 64-bit hash of the value, used by the hash table of the dictionary.
+         */
+        public static long hash(byte[] key) {
+            return hash(key, 0, key.length);
+        }
+
+        private static long hash(byte[] bytes, int from, int to) {
+            // FNV-1a, with the finalizer of MurmurHash3 so that all bits depend on all bytes
+            long hash = 0xcbf29ce484222325L;
+            for (int i = from; i < to; i++) {
+                hash = (hash ^ bytes[i]) * 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            return hash ^ hash >>> 33;
+        }
+
+        /**
+         * Binary search in the dictionary, used to find where new values are inserted.
+         *
+         * @return the code of the value, or {@code -(insertion point) - 1} like {@link Arrays#binarySearch}.
+         */
+        private int search(String value) {
+            int low = 0;
+            int high = cardinality() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = value(middle).compareTo(value);
+                if (comparison < 0) {
+                    low = middle + 1;
+                }
+                else if (comparison > 0) {
+                    high = middle - 1;
+                }
+                else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Returns the column for the products described by {@code sources} (see {@link Splicer}). New values are
+         * inserted into a copy of the dictionary with bulk copies of the old values between them, old codes are
+         * shifted by the number of values inserted before them.
+         */
+        StringColumn splice(int[] sources, List<ProductDTO> changed, Function<ProductDTO, String> field) {
+            TreeSet<String> additions = new TreeSet<>();
+            for (ProductDTO product : changed) {
+                String value = field.apply(product);
+                if (value != null && find(value) == NO_CODE) {
+                    additions.add(value);
+                }
+            }
+
+            StringColumn dictionary = this;
+            int[] newCodes = null;
+            if (!additions.isEmpty()) {
+                int cardinality = cardinality();
+                byte[][] encoded = new byte[additions.size()][];
+                int[] insertionPoints = new int[additions.size()];
+                int addedBytes = 0;
+                int i = 0;
+                for (String addition : additions) {
+                    encoded[i] = addition.getBytes(StandardCharsets.UTF_8);
+                    insertionPoints[i] = -search(addition) - 1;
+                    addedBytes += encoded[i++].length;
+                }
+
+                byte[] mergedValues = new byte[values.length + addedBytes];
+                int[] mergedOffsets = new int[cardinality + additions.size() + 1];
+                newCodes = new int[cardinality];
+                int oldCode = 0;
+                int newCode = 0;
+                for (i = 0; i <= encoded.length; i++) {
+                    int until = i < encoded.length ? insertionPoints[i] : cardinality;
+                    System.arraycopy(values, offsets[oldCode], mergedValues, mergedOffsets[newCode],
+                            offsets[until] - offsets[oldCode]);
+                    for (; oldCode < until; oldCode++, newCode++) {
+                        newCodes[oldCode] = newCode;
+                        mergedOffsets[newCode + 1] = mergedOffsets[newCode] + offsets[oldCode + 1] - offsets[oldCode];
+                    }
+                    if (i < encoded.length) {
+                        System.arraycopy(encoded[i], 0, mergedValues, mergedOffsets[newCode], encoded[i].length);
+                        mergedOffsets[newCode + 1] = mergedOffsets[newCode] + encoded[i].length;
+                        newCode++;
+                    }
+                }
+                dictionary = new StringColumn(null, mergedValues, mergedOffsets);
+            }
+
+            int[] columnCodes = new int[sources.length];
+            for (int position = 0; position < sources.length; position++) {
+                int source = sources[position];
+                if (source >= 0) {
+                    int code = codes[source];
+                    columnCodes[position] = code == NO_CODE || newCodes == null ? code : newCodes[code];
+                }
+                else {
+                    columnCodes[position] = dictionary.find(field.apply(changed.get(-1 - source)));
+                }
+            }
+            return compact(columnCodes, dictionary.values, dictionary.offsets);
+        }
+
+        /**
+         * Removes the values no product uses from the dictionary, if that is more than half of them.
+         */
+        private static StringColumn compact(int[] codes, byte[] values, int[] offsets) {
+            int cardinality = offsets.length - 1;
+            BitSet used = new BitSet(cardinality);
+            for (int code : codes) {
+                if (code != NO_CODE) {
+                    used.set(code);
+                }
+            }
+            if (used.cardinality() * 2 >= cardinality) {
+                return new StringColumn(codes, values, offsets);
+            }
+
+            int[] newCodes = new int[cardinality];
+            int[] newOffsets = new int[used.cardinality() + 1];
+            int newCode = 0;
+            for (int code = used.nextSetBit(0); code >= 0; code = used.nextSetBit(code + 1)) {
+                newCodes[code] = newCode;
+                newOffsets[newCode + 1] = newOffsets[newCode] + offsets[code + 1] - offsets[code];
+                newCode++;
+            }
+            byte[] newValues = new byte[newOffsets[newCode]];
+            for (int code = used.nextSetBit(0); code >= 0; code = used.nextSetBit(code + 1)) {
+                System.arraycopy(values, offsets[code], newValues, newOffsets[newCodes[code]],
+                        offsets[code + 1] - offsets[code]);
+            }
+            int[] compacted = new int[codes.length];
+            for (int position = 0; position < codes.length; position++) {
+                compacted[position] = codes[position] == NO_CODE ? NO_CODE : newCodes[codes[position]];
+            }
+            return new StringColumn(compacted, newValues, newOffsets);
+        }
+    }
+
+    /**
+     * Builds new columns from ranges of the products of the enclosing columns and new products, in any order,
+     * e.g. to apply changes or to reload a file of which only some parts have changed.
+     * <p>
+     * Copied products are never decoded: their ids and flags are copied and their codes are shifted by the number
+     * of new values merged into the sorted dictionaries before them. Only the values of new products are encoded,
+     * so the cost does not depend on the number and the values of the copied products. Values no longer used by
+     * any product stay in the dictionaries until more than half of a dictionary is unused, then it is compacted.
+     * A splicer is not thread-safe.
+     */
+    public final class Splicer {
+
+        /** Position of every product in the enclosing columns, or {@code -1 - index} of a product in {@link #added}. */
+        private int[] sources = new int[1024];
+        private int count;
+        private final List<ProductDTO> added = new ArrayList<>();
+
+        private Splicer() {
+        }
+
+        /**
+         * Appends a range of products of the enclosing columns.
+         *
+         * @param from position of the first product to copy.
+         * @param to position after the last product to copy.
+         * @return this splicer.
+         */
+        public Splicer copy(int from, int to) {
+            if (from < 0 || to > size || from > to) {
+                throw new IndexOutOfBoundsException("Range " + from + " to " + to + ", size: " + size);
+            }
+            ensureCapacity(to - from);
+            for (int position = from; position < to; position++) {
+                sources[count++] = position;
+            }
+            return this;
+        }
+
+        /**
+         * Appends a new product.
+         *
+         * @param product the product to append.
+         * @return this splicer.
+         */
+        public Splicer add(ProductDTO product) {
+            ensureCapacity(1);
+            sources[count++] = -1 - added.size();
+            added.add(product);
+            return this;
+        }
+
+        /**
+         * @return the columns of all appended products, the enclosing columns are not modified.
+         */
+        public ProductColumns build() {
+            int[] positions = Arrays.copyOf(sources, count);
+            long[] newIds = new long[count];
+            BitSet newMissingIds = new BitSet();
+            BitSet newActive = new BitSet(count);
+            for (int position = 0; position < count; position++) {
+                int source = positions[position];
+                if (source >= 0) {
+                    newIds[position] = ids[source];
+                    if (missingIds.get(source)) {
+                        newMissingIds.set(position);
+                    }
+                    if (active.get(source)) {
+                        newActive.set(position);
+                    }
+                }
+                else {
+                    ProductDTO product = added.get(-1 - source);
+                    if (product.getId() == null) {
+                        newMissingIds.set(position);
+                    }
+                    else {
+                        newIds[position] = product.getId();
+                    }
+                    newActive.set(position, product.isActive());
+                }
+            }
+            return new ProductColumns(count, newIds, newMissingIds,
+                    names.splice(positions, added, ProductDTO::getName),
+                    partNumbers.splice(positions, added, ProductDTO::getPartNumberNR),
+                    categories.splice(positions, added, ProductDTO::getCategory),
+                    companyNames.splice(positions, added, ProductDTO::getCompanyName),
+                    newActive);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (count + additional > sources.length) {
+                sources = Arrays.copyOf(sources, Math.max(sources.length * 2, count + additional));
+            }
+        }
+    }
+
+    /**
+     * Read-only list view over the columns.
+     */
+    private final class ProductList extends AbstractList<ProductDTO> implements RandomAccess {
+
+        @Override
+        public ProductDTO get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return ProductColumns.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Collects products one at a time, e.g. while the XML file is parsed, so that no list of all products
+     * has to be held in memory. A builder is not thread-safe.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] ids = new long[1024];
+        private final BitSet missingIds = new BitSet();
+        private final BitSet active = new BitSet();
+        private final StringColumnBuilder names = new StringColumnBuilder();
+        private final StringColumnBuilder partNumbers = new StringColumnBuilder();
+        private final StringColumnBuilder categories = new StringColumnBuilder();
+        private final StringColumnBuilder companyNames = new StringColumnBuilder();
+
+        private Builder() {
+        }
+
+        /**
+         * Appends a product.
+         *
+         * @param product the product to append.
+         * @return this builder.
+         */
+        public Builder add(ProductDTO product) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (product.getId() == null) {
+                missingIds.set(size);
+            }
+            else {
+                ids[size] = product.getId();
+            }
+            names.add(size, product.getName());
+            partNumbers.add(size, product.getPartNumberNR());
+            categories.add(size, product.getCategory());
+            companyNames.add(size, product.getCompanyName());
+            active.set(size, product.isActive());
+            size++;
+            return this;
+        }
+
+        /**
+         * @return the columns of all added products.
+         */
+        public ProductColumns build() {
+            return new ProductColumns(size, Arrays.copyOf(ids, size), (BitSet) missingIds.clone(),
+                    names.build(size), partNumbers.build(size), categories.build(size), companyNames.build(size),
+                    (BitSet) active.clone());
+        }
+    }
+
+    /**
+     * Assigns temporary codes to distinct values in order of their first occurrence,
+     * which are replaced by the codes of the sorted dictionary when the column is built.
+     */
+    private static final class StringColumnBuilder {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private int[] positionCodes = new int[1024];
+
+        void add(int position, String value) {
+            if (position == positionCodes.length) {
+                positionCodes = Arrays.copyOf(positionCodes, position * 2);
+            }
+            positionCodes[position] = value == null ? NO_CODE : codes.computeIfAbsent(value, key -> codes.size());
+        }
+
+        StringColumn build(int size) {
+            String[] sortedValues = codes.keySet().toArray(String[]::new);
+            Arrays.sort(sortedValues);
+
+            int[] sortedCodes = new int[sortedValues.length];
+            int[] offsets = new int[sortedValues.length + 1];
+            byte[][] encoded = new byte[sortedValues.length][];
+            for (int code = 0; code < sortedValues.length; code++) {
+                sortedCodes[codes.get(sortedValues[code])] = code;
+                encoded[code] = sortedValues[code].getBytes(StandardCharsets.UTF_8);
+                offsets[code + 1] = offsets[code] + encoded[code].length;
+            }
+            byte[] values = new byte[offsets[sortedValues.length]];
+            for (int code = 0; code < encoded.length; code++) {
+                System.arraycopy(encoded[code], 0, values, offsets[code], encoded[code].length);
+            }
+
+            int[] columnCodes = new int[size];
+            for (int position = 0; position < size; position++) {
+                int code = positionCodes[position];
+                columnCodes[position] = code == NO_CODE ? NO_CODE : sortedCodes[code];
+            }
+            return new StringColumn(columnCodes, values, offsets);
+        }
+    }
+}
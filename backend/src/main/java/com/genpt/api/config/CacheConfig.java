@@ -1,34 +1,54 @@
 package com.genpt.api.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 /**
  * Configuration class that enables caching for repeatable requests in the application.
  * Caching is enabled specifically for the {@link com.genpt.api.service.ProductService} class,
  * allowing for improved performance by caching the results of repeated method calls.
  * <p>
  *
- * In this configuration, a {@link org.springframework.cache.concurrent.ConcurrentMapCacheManager}
- * bean named "products" is defined using the {@link org.springframework.context.annotation.Bean}
- * annotation. This cache manager creates concurrent hash map-based caches for storing
- * cached data in memory. The "products" cache is specifically configured to cache data
- * related to products retrieved by the {@link com.genpt.api.service.ProductService}.
+ * Every query type gets its own cache region, so keys of one query can never collide with
+ * or crowd out the keys of another. Regions are backed by Caffeine caches, which are bounded
+ * by size and time-to-live (configured per region in {@code cache.regions} in application.yml)
+ * and evict using W-TinyLFU. That keeps the heap bounded even when arbitrary product names
+ * are requested, e.g. by scrapers.
+ * <p>
+ * Statistics (hits, misses, evictions) are recorded for every region and published by Actuator
+ * as the {@code cache.gets}, {@code cache.evictions} and {@code cache.size} metrics.
  * <p>
  * @see org.springframework.context.annotation.Configuration
  * @see org.springframework.cache.annotation.EnableCaching
  * @see org.springframework.cache.CacheManager
- * @see org.springframework.cache.concurrent.ConcurrentMapCacheManager
+ * @see com.github.benmanes.caffeine.cache.Caffeine
  * @see com.genpt.api.service.ProductService
  */
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
+    
+    /** Cache region for full-text search results. */
+    public static final String PRODUCT_SEARCH = "productSearch";
+    
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("products");
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        List<CaffeineCache> caches = cacheProperties.getRegions().entrySet().stream()
+                .map(region -> new CaffeineCache(region.getKey(),
+                        Caffeine.from(region.getValue()).recordStats().build()))
+                .toList();
+        
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package com.genpt.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache regions defined in application.yml under {@code cache.regions}.
+ * Every entry maps a cache name to a Caffeine specification, for example
+ * {@code maximumSize=10000,expireAfterWrite=10m}.
+ *
+ * @see CacheConfig
+ * @see com.github.benmanes.caffeine.cache.CaffeineSpec
+ */
+@Data
+@ConfigurationProperties(prefix = "cache")
+public class CacheProperties {
+    
+    private Map<String, String> regions = new LinkedHashMap<>();
+}
@@ -0,0 +1,14 @@
+package com.genpt.api.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration class that enables scheduled background tasks, e.g. the compaction of the catalog change log.
+ *
+ * @see com.genpt.api.service.ChangeLogCompactionTask
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,14 +1,19 @@
 package com.genpt.api.controller;
 
 import com.genpt.api.exception.EmptyResourceException;
+import com.genpt.api.exception.InvalidXmlFileException;
 import com.genpt.api.exception.ResourceNotFoundException;
 import com.genpt.api.exception.XmlParsingException;
 import com.genpt.api.util.ApiError;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+import java.security.InvalidParameterException;
 
 /**
  * Global exception handler for handling various types of exceptions thrown
@@ -80,6 +85,70 @@ public class DefaultExceptionHandler {
         return new ResponseEntity<>(apiError, httpStatus);
     }
     
+    /**
+     * Handle InvalidXmlFileException and return a ResponseEntity with an appropriate error message and status code.
+     *
+     * @param ex      The InvalidXmlFileException object.
+     * @param request The HttpServletRequest object.
+     * @return A ResponseEntity containing the error response.
+     * @see ApiError
+     */
+    @ExceptionHandler(InvalidXmlFileException.class)
+    public ResponseEntity<ApiError> handleInvalidXmlFile(InvalidXmlFileException ex, HttpServletRequest request) {
+        HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+        ApiError apiError = ApiError.builder()
+                .status(httpStatus.value())
+                .error(httpStatus.getReasonPhrase())
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+        
+        return new ResponseEntity<>(apiError, httpStatus);
+    }
+    
+    /**
+     * Handle InvalidParameterException and return a ResponseEntity with an appropriate error message and status code.
+     *
+     * @param ex      The InvalidParameterException object.
+     * @param request The HttpServletRequest object.
+     * @return A ResponseEntity containing the error response.
+     * @see ApiError
+     */
+    @ExceptionHandler(InvalidParameterException.class)
+    public ResponseEntity<ApiError> handleInvalidParameter(InvalidParameterException ex, HttpServletRequest request) {
+        HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+        ApiError apiError = ApiError.builder()
+                .status(httpStatus.value())
+                .error(httpStatus.getReasonPhrase())
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+        
+        return new ResponseEntity<>(apiError, httpStatus);
+    }
+    
+    /**
+     * Handle a request body or path variable that cannot be read, e.g. malformed JSON or a non-numeric id,
+     * and return a ResponseEntity with an appropriate error message and status code.
+     *
+     * @param ex      The HttpMessageNotReadableException or MethodArgumentTypeMismatchException object.
+     * @param request The HttpServletRequest object.
+     * @return A ResponseEntity containing the error response.
+     * @see ApiError
+     */
+    @ExceptionHandler({HttpMessageNotReadableException.class, MethodArgumentTypeMismatchException.class})
+    public ResponseEntity<ApiError> handleUnreadableRequest(Exception ex, HttpServletRequest request) {
+        HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+        ApiError apiError = ApiError.builder()
+                .status(httpStatus.value())
+                .error(httpStatus.getReasonPhrase())
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+        
+        return new ResponseEntity<>(apiError, httpStatus);
+    }
+    
     /**
      * Handle generic Exception and return a ResponseEntity with an appropriate error message and status code.
      *
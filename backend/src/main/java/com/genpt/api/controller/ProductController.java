@@ -1,17 +1,39 @@
 package com.genpt.api.controller;
 
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.dto.CatalogEventDTO;
+import com.genpt.api.dto.ProductBatchDTO;
+import com.genpt.api.dto.ProductBatchRequestDTO;
+import com.genpt.api.dto.ProductChangesDTO;
 import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.dto.ProductPageDTO;
+import com.genpt.api.dto.ProductQueryDTO;
+import com.genpt.api.index.FacetQuery;
+import com.genpt.api.service.CatalogEvents;
 import com.genpt.api.service.ProductService;
 import com.genpt.api.util.ApiResponse;
+import com.genpt.api.util.ProductsJsonWriter;
 import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Controller class for managing product-related HTTP requests.
@@ -22,8 +44,16 @@ import java.util.Map;
 @RequestMapping("/api/v1/products")
 public class ProductController {
     
+    private static final MediaType XML_UTF8 = new MediaType(MediaType.APPLICATION_XML, StandardCharsets.UTF_8);
+    
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    
     private final ProductService productService;
     
+    private final ProductsJsonWriter productsJsonWriter;
+    
+    private final CatalogEvents catalogEvents;
+    
     /**
      *  XML file name from application.yml
      */
@@ -37,11 +67,16 @@ public class ProductController {
     
     /**
      * Endpoint for getting the number of records.
-     * @return JSON with a message indicating successful parsing and the number of records.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @return JSON with a message indicating successful parsing and the number of records,
+     *         or nothing (304) if the client already has the current catalog version.
      * @see ApiResponse
      */
     @GetMapping("/read-file")
-    public ApiResponse<?> readXmlFileAndGetProductsLength() {
+    public ApiResponse<?> readXmlFileAndGetProductsLength(WebRequest webRequest) {
+        if (isNotModified(webRequest, productService.getCatalog(xmlFileName))) {
+            return null;
+        }
         int numOfRecords = productService.readXmlFile(xmlFileName);
         return ApiResponse.builder()
                 .message("Number of records in the file: " + numOfRecords)
@@ -50,27 +85,214 @@ public class ProductController {
     
     /**
      * Endpoint for fetching all products in JSON format.
-     * @return JSON with a message indicating successful retrieval and the list of products.
+     * Writes JSON with a message indicating successful retrieval and the list of products.
+     * Without paging parameters all products are returned; they are serialized once per catalog version,
+     * see {@link ProductsJsonWriter}.
+     * <p>
+     * With {@code page}, {@code size}, {@code cursor} or {@code fields} a single page of products is returned,
+     * optionally projected to the given fields (e.g. {@code fields=id,name}), see
+     * {@link ProductService#getProductsPage(String, Integer, int, String, String)}.
+     * Nothing is written (304) if the client already has the current catalog version.
+     * @param page number of the page (0-based).
+     * @param size number of products per page.
+     * @param cursor opaque cursor returned with the previous page.
+     * @param fields comma separated list of fields to return.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @param response the response the JSON is written to.
+     * @return JSON with the requested page, or {@code null} if the response was already written.
      * @see ApiResponse
      */
-    @GetMapping("/all")
-    public ApiResponse<?> getAllProductsJSON() {
-        List<ProductDTO> allProducts = productService.getAllProducts(xmlFileName);
-        return ApiResponse.builder()
-                .message("Fetched all records from the file.")
-                .data(Map.of("products", allProducts))
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ApiResponse<ProductPageDTO> getAllProductsJSON(@RequestParam(required = false) Integer page,
+                                                          @RequestParam(required = false) Integer size,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) String fields,
+                                                          WebRequest webRequest,
+                                                          HttpServletResponse response) throws IOException {
+        ProductCatalog catalog = productService.getCatalog(xmlFileName);
+        if (isNotModified(webRequest, catalog)) {
+            return null;
+        }
+        
+        if (page == null && size == null && cursor == null && fields == null) {
+            productsJsonWriter.write(catalog, "Fetched all records from the file.", response);
+            return null;
+        }
+        
+        int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+        ProductPageDTO productPage = productService.getProductsPage(xmlFileName, page, pageSize, cursor, fields);
+        return ApiResponse.<ProductPageDTO>builder()
+                .message(String.format("Fetched %d of %d records from the file.",
+                        productPage.getProducts().size(), productPage.getTotalElements()))
+                .data(productPage)
+                .build();
+    }
+    
+    /**
+     * Endpoint for fetching all products as a reactive stream, for clients accepting {@code application/x-ndjson}
+     * (one product per line). Products of the current catalog are emitted as the client demands them: the next
+     * product is created from the catalog only after the previous one was written, so a slow consumer never builds
+     * up a backlog of products. Every product is written and flushed on its own; {@code /stream} exports all products
+     * faster, flushing once.
+     * Nothing is written (304) if the client already has the current catalog version.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @return the products in document order, or {@code null} if the client has the current version.
+     * @see ProductService#getProductFlux(String)
+     */
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductDTO> getAllProductsFlux(WebRequest webRequest) {
+        if (isNotModified(webRequest, productService.getCatalog(xmlFileName))) {
+            return null;
+        }
+        return productService.getProductFlux(xmlFileName);
+    }
+    
+    /**
+     * Endpoint for exporting all products as newline delimited JSON (one product per line).
+     * Products of the current catalog (the same as those of {@code /all}) are serialized one at a time and never
+     * collected into a list, and writing blocks while the client is not reading, so a request needs little memory
+     * for any catalog size.
+     * @return the streamed products.
+     * @see ProductService#streamProducts(String)
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProducts() {
+        // the catalog is loaded before the response is committed, so that a missing file is still reported as an error
+        Stream<ProductDTO> products = productService.streamProducts(xmlFileName);
+        StreamingResponseBody body = outputStream -> {
+            try (products) {
+                productsJsonWriter.writeLines(products, outputStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    /**
+     * Endpoint for subscribing to catalog changes as server-sent events. The current version is sent first,
+     * then every version published after an upload, a batch of changes or a reload of the file.
+     * The request waits asynchronously and holds no thread between events.
+     * @return the stream of {@code catalog} events.
+     * @see CatalogEvents
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<CatalogEventDTO>> catalogEvents() {
+        return catalogEvents.subscribe(productService.getCatalog(xmlFileName));
+    }
+    
+    /**
+     * Endpoint for searching products by name, part number, company name and category.
+     * @param query the search query, matched case-insensitively by whole words, prefixes and parts of words.
+     * @param limit maximal number of returned products.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @return JSON with the matching products, best match first,
+     *         or nothing (304) if the client already has the current catalog version.
+     * @see ApiResponse
+     */
+    @GetMapping("/search")
+    public ApiResponse<List<ProductDTO>> searchProducts(@RequestParam("q") String query,
+                                                        @RequestParam(defaultValue = "20") int limit,
+                                                        WebRequest webRequest) {
+        if (isNotModified(webRequest, productService.getCatalog(xmlFileName))) {
+            return null;
+        }
+        List<ProductDTO> foundProducts = productService.searchProducts(xmlFileName, query, limit);
+        return ApiResponse.<List<ProductDTO>>builder()
+                .message(String.format("Found %d records matching query: '%s'", foundProducts.size(), query))
+                .data(foundProducts)
+                .build();
+    }
+    
+    /**
+     * Endpoint for filtering products by category, company name, active flag and id range, with facet counts.
+     * Repeated parameters of a field match any of the values (e.g. {@code category=fruit&category=dish}),
+     * different fields have to match all. Facet counts of a field ignore the filter on that field.
+     * @param category categories to match.
+     * @param companyName company names to match.
+     * @param active active flag to match.
+     * @param minId smallest id (inclusive).
+     * @param maxId largest id (inclusive).
+     * @param page number of the page (0-based).
+     * @param size number of products per page.
+     * @param facetLimit maximal number of values per facet.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @return JSON with a page of matching products and the facet counts,
+     *         or nothing (304) if the client already has the current catalog version.
+     * @see ProductService#queryProducts(String, FacetQuery, int, int, int)
+     */
+    @GetMapping("/query")
+    public ApiResponse<ProductQueryDTO> queryProducts(@RequestParam(required = false) List<String> category,
+                                                      @RequestParam(required = false) List<String> companyName,
+                                                      @RequestParam(required = false) Boolean active,
+                                                      @RequestParam(required = false) Long minId,
+                                                      @RequestParam(required = false) Long maxId,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "100") int size,
+                                                      @RequestParam(defaultValue = "20") int facetLimit,
+                                                      WebRequest webRequest) {
+        if (isNotModified(webRequest, productService.getCatalog(xmlFileName))) {
+            return null;
+        }
+        FacetQuery query = new FacetQuery(category == null ? null : Set.copyOf(category),
+                companyName == null ? null : Set.copyOf(companyName), active, minId, maxId);
+        ProductQueryDTO result = productService.queryProducts(xmlFileName, query, page, size, facetLimit);
+        return ApiResponse.<ProductQueryDTO>builder()
+                .message(String.format("Found %d matching records.", result.getTotalElements()))
+                .data(result)
+                .build();
+    }
+    
+    /**
+     * Endpoint for looking products up by their part number, e.g. {@code 2303-E1A-G-M-W209B-VM}.
+     * A segment {@code *} matches any single segment and a segment ending with {@code *} matches segments
+     * starting with the given characters, e.g. {@code 2303-*-G} or {@code 2303-E1*}.
+     * @param pattern the part number pattern, matched case-insensitively.
+     * @param match {@code exact} to match whole part numbers, {@code prefix} to match part numbers
+     *              starting with the pattern segments.
+     * @param limit maximal number of returned products.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @return JSON with the matching products sorted by part number and the total number of matches,
+     *         or nothing (304) if the client already has the current catalog version.
+     * @see ApiResponse
+     */
+    @GetMapping("/part-numbers")
+    public ApiResponse<ProductPageDTO> getProductsByPartNumber(@RequestParam String pattern,
+                                                               @RequestParam(defaultValue = "exact") String match,
+                                                               @RequestParam(defaultValue = "100") int limit,
+                                                               WebRequest webRequest) {
+        boolean prefix = switch (match) {
+            case "exact" -> false;
+            case "prefix" -> true;
+            default -> throw new InvalidParameterException("Match has to be 'exact' or 'prefix', was: " + match);
+        };
+        if (isNotModified(webRequest, productService.getCatalog(xmlFileName))) {
+            return null;
+        }
+        ProductPageDTO matches = productService.findByPartNumber(xmlFileName, pattern, prefix, limit);
+        return ApiResponse.<ProductPageDTO>builder()
+                .message(String.format("Found %d records matching part number: '%s'",
+                        matches.getTotalElements(), pattern))
+                .data(matches)
                 .build();
     }
     
     /**
      * Endpoint for fetching products by name.
      * @param productName The name of the product to search for.
-     * @return JSON with a message indicating successful retrieval and the list of products matching the name.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @return JSON with a message indicating successful retrieval and the list of products matching the name,
+     *         or nothing (304) if the client already has the current catalog version.
      * @see ApiResponse
      */
     @GetMapping("/{productName}")
-    public ApiResponse<List<ProductDTO>> getProductsByName(@PathVariable String productName) {
+    public ApiResponse<List<ProductDTO>> getProductsByName(@PathVariable String productName, WebRequest webRequest) {
+        ProductCatalog catalog = productService.getCatalog(xmlFileName);
+        // look the name up first, so that unknown names are answered with 404 and not 304
         List<ProductDTO> productByName = productService.getProductByName(xmlFileName, productName);
+        if (isNotModified(webRequest, catalog)) {
+            return null;
+        }
         return ApiResponse.<List<ProductDTO>>builder()
                 .message(String.format("Fetched all records matching name: '%s'", productName))
                 .data(productByName)
@@ -79,13 +301,45 @@ public class ProductController {
     
     //  ---- extra ----
     
+    /**
+     * Endpoint for looking up many product names and ids in one request, e.g. all products of an order.
+     * All keys are resolved against the same catalog version, unknown keys are marked as not found
+     * instead of failing the request.
+     * @param request the names and ids to look up.
+     * @return JSON with one result per name and id, in request order.
+     * @see ProductService#findProducts(String, ProductBatchRequestDTO)
+     */
+    @PostMapping("/batch")
+    public ApiResponse<ProductBatchDTO> findProducts(@RequestBody ProductBatchRequestDTO request) {
+        ProductBatchDTO result = productService.findProducts(xmlFileName, request);
+        return ApiResponse.<ProductBatchDTO>builder()
+                .message(String.format("Found %d of %d requested names and ids.",
+                        result.getFound(), result.getResults().size()))
+                .data(result)
+                .build();
+    }
+    
     /**
      * Endpoint for getting the XML file content as application/xml.
-     * @return the xml file
+     * The file is streamed from disk with its Content-Length, and partial requests (Range header) are supported.
+     * Changes applied through the api are only in the file once they are compacted, so the ETag and Last-Modified
+     * of the file are sent rather than those of the catalog.
+     * @param webRequest the current request, used to answer conditional requests.
+     * @return the xml file, or nothing (304) if the client already has this content of the file.
      */
     @GetMapping(value = "/xml", produces = MediaType.APPLICATION_XML_VALUE)
-    public String getXmlFileContent() {
-        return productService.getXmlFileContent(xmlFileName);
+    public ResponseEntity<Resource> getXmlFileContent(WebRequest webRequest) throws IOException {
+        // validators of the file itself, which lags behind the catalog until changes are compacted
+        String eTag = productService.getXmlFileETag(xmlFileName);
+        Resource xmlFile = productService.getXmlFileResource(xmlFileName);
+        long lastModified = xmlFile.lastModified();
+        if (eTag != null ? webRequest.checkNotModified(eTag, lastModified) : webRequest.checkNotModified(lastModified)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(XML_UTF8)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .body(xmlFile);
     }
     
     /**
@@ -101,4 +355,58 @@ public class ProductController {
                 .message("File successfully updated.")
                 .build();
     }
+    
+    /**
+     * Endpoint for applying a batch of changes, e.g. a price or availability feed, without uploading the whole file.
+     * Deletes are applied before upserts, an upserted product replaces the product with the same id or is added.
+     * @param changes products to upsert and ids to delete.
+     * @return ApiResponse with the number of products after the changes.
+     * @see ProductService#applyChanges(String, ProductChangesDTO)
+     */
+    @PatchMapping
+    public ApiResponse<?> applyChanges(@RequestBody ProductChangesDTO changes) {
+        ProductCatalog catalog = productService.applyChanges(xmlFileName, changes);
+        return ApiResponse.builder()
+                .message(String.format("Changes successfully applied, the catalog has %d records.", catalog.size()))
+                .build();
+    }
+    
+    /**
+     * Endpoint for replacing the product with the given id, or adding it if there is none.
+     * @param id id of the product.
+     * @param product the new product, its id is taken from the path.
+     * @return ApiResponse with the saved product.
+     * @see ProductService#saveProduct(String, Long, ProductDTO)
+     */
+    @PutMapping("/{id}")
+    public ApiResponse<ProductDTO> saveProduct(@PathVariable Long id, @RequestBody ProductDTO product) {
+        return ApiResponse.<ProductDTO>builder()
+                .message(String.format("Product %d successfully saved.", id))
+                .data(productService.saveProduct(xmlFileName, id, product))
+                .build();
+    }
+    
+    /**
+     * Endpoint for deleting the products with the given id.
+     * @param id id of the product.
+     * @return ApiResponse indicating successful deletion.
+     * @see ProductService#deleteProduct(String, Long)
+     */
+    @DeleteMapping("/{id}")
+    public ApiResponse<?> deleteProduct(@PathVariable Long id) {
+        productService.deleteProduct(xmlFileName, id);
+        return ApiResponse.builder()
+                .message(String.format("Product %d successfully deleted.", id))
+                .build();
+    }
+    
+    /**
+     * Checks the request validators (If-None-Match, If-Modified-Since) against the given catalog version
+     * and sets the ETag and Last-Modified headers of the response.
+     * @return {@code true} if the response was completed as 304 Not Modified and nothing should be written.
+     * @see WebRequest#checkNotModified(String, long)
+     */
+    private boolean isNotModified(WebRequest webRequest, ProductCatalog catalog) {
+        return webRequest.checkNotModified(catalog.getETag(), catalog.getLastModified().toEpochMilli());
+    }
 }
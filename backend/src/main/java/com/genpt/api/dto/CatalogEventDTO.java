@@ -0,0 +1,26 @@
+package com.genpt.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Data Transfer Object (DTO) announcing a published catalog version to the subscribers of the catalog events.
+ * Clients holding products of an older version reload them, sending the previous {@code etag} in
+ * {@code If-None-Match} to skip unchanged content.
+ *
+ * @see com.genpt.api.service.CatalogEvents
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogEventDTO {
+    private long version;
+    private int products;
+    private Instant lastModified;
+    private String etag;
+}
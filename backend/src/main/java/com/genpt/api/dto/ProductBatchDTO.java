@@ -0,0 +1,41 @@
+package com.genpt.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) with the result of a batch lookup: one result per requested name and id,
+ * names first, both in request order. Keys without products are marked as not found instead of failing the request.
+ *
+ * @see ProductBatchRequestDTO
+ * @see com.genpt.api.service.ProductService#findProducts
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchDTO {
+    private List<Result> results;
+    private int found;
+    private int notFound;
+
+    /**
+     * Products found for one requested name or id.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL) // a result has either a name or an id
+    public static class Result {
+        private String name;
+        private Long id;
+        private boolean found;
+        private List<ProductDTO> products;
+    }
+}
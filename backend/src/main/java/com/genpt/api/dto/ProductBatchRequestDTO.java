@@ -0,0 +1,23 @@
+package com.genpt.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) with the product names and ids to look up in one request.
+ *
+ * @see ProductBatchDTO
+ * @see com.genpt.api.controller.ProductController
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchRequestDTO {
+    private List<String> names;
+    private List<Long> ids;
+}
@@ -0,0 +1,28 @@
+package com.genpt.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) with a batch of changes to the catalog, e.g. from a price or availability feed.
+ * <p>
+ * Products in {@code upsert} replace the product with the same id or are added if there is none,
+ * products with an id in {@code delete} are removed. Deletes are applied before upserts.
+ * The same object is written to the change log, one batch per line.
+ *
+ * @see com.genpt.api.controller.ProductController
+ * @see com.genpt.api.service.ProductService
+ * @see com.genpt.api.catalog.CatalogChangeLog
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangesDTO {
+    private List<ProductDTO> upsert;
+    private List<Long> delete;
+}
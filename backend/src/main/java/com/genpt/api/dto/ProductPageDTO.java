@@ -0,0 +1,32 @@
+package com.genpt.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) with a single page of products.
+ * <p>
+ * Products are either full {@link ProductDTO}s or, when a field projection was requested,
+ * objects containing only the selected fields.
+ *
+ * @see com.genpt.api.controller.ProductController
+ * @see com.genpt.api.service.ProductService
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL) // excludes page info that does not apply to cursor requests
+public class ProductPageDTO {
+    private List<?> products;
+    private Integer page;
+    private int size;
+    private int totalElements;
+    private Integer totalPages;
+    private String nextCursor;
+}
@@ -0,0 +1,30 @@
+package com.genpt.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Transfer Object (DTO) with a page of the products matching a faceted query
+ * and the number of matches per category and company name.
+ *
+ * @see com.genpt.api.controller.ProductController
+ * @see com.genpt.api.index.FacetIndex
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductQueryDTO {
+    private List<ProductDTO> products;
+    private int page;
+    private int size;
+    private int totalElements;
+    private int totalPages;
+    /** Facet name ({@code category}, {@code companyName}) to value to number of matching products. */
+    private Map<String, Map<String, Integer>> facets;
+}
@@ -0,0 +1,15 @@
+package com.genpt.api.exception;
+
+/**
+ * Thrown when an uploaded XML file is malformed or contains invalid products.
+ */
+public class InvalidXmlFileException extends RuntimeException {
+    
+    public InvalidXmlFileException(String message) {
+        super(message);
+    }
+    
+    public InvalidXmlFileException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
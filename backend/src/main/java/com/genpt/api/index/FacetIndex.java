@@ -0,0 +1,216 @@
+package com.genpt.api.index;
+
+import com.genpt.api.catalog.ProductColumns;
+import com.genpt.api.dto.ProductDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bitmap index for faceted queries over the {@link ProductIndex} of a loaded catalog: filtering by category,
+ * company name, active flag and id range, and counting the matches per category and company name.
+ * <p>
+ * Every category and company name has a compressed {@link PositionBitmap} of its products, the active flags are kept
+ * as plain words. A query is evaluated on words with one bit per product: the values of a field are combined with
+ * OR, the fields with AND, and a facet count is the number of bits a value has in common with the matches.
+ * The cost of a query is a few bitwise operations per 64 products and does not depend on the number of predicates
+ * as much as a scan over the products would.
+ * <p>
+ * Facet counts of a field ignore the predicate on that field itself, so a client filtering by one category still
+ * sees how many products the other categories would add.
+ *
+ * @see com.genpt.api.catalog.ProductCatalog
+ */
+public final class FacetIndex {
+
+    /** Name of the category facet. */
+    public static final String CATEGORY = "category";
+
+    /** Name of the company name facet. */
+    public static final String COMPANY_NAME = "companyName";
+
+    private final ProductIndex index;
+    private final int wordCount;
+    private final PositionBitmap[] categories;
+    private final PositionBitmap[] companyNames;
+
+    /** Active flags, one bit per product. */
+    private final long[] active;
+
+    private FacetIndex(ProductIndex index) {
+        this.index = index;
+        this.wordCount = (index.size() + Long.SIZE - 1) / Long.SIZE;
+        this.categories = index.categoryBitmaps();
+        this.companyNames = index.companyNameBitmaps();
+        this.active = new long[wordCount];
+        ProductColumns columns = index.getColumns();
+        for (int position = 0; position < columns.size(); position++) {
+            if (columns.isActive(position)) {
+                active[position >>> 6] |= 1L << position;
+            }
+        }
+    }
+
+    /**
+     * Builds the facet index over the products of the given index.
+     *
+     * @param index the index of the catalog.
+     * @return the facet index.
+     */
+    public static FacetIndex of(ProductIndex index) {
+        return new FacetIndex(index);
+    }
+
+    /**
+     * Evaluates the query.
+     *
+     * @param query the predicates.
+     * @param facetLimit maximal number of values returned per facet, those with the most matches.
+     * @return the matching products and the facet counts.
+     */
+    public Selection select(FacetQuery query, int facetLimit) {
+        long[] base = new long[wordCount];
+        Arrays.fill(base, -1L);
+        if (index.size() % Long.SIZE != 0) {
+            base[wordCount - 1] = (1L << index.size()) - 1;
+        }
+        if (query.active() != null) {
+            for (int i = 0; i < wordCount; i++) {
+                base[i] &= query.active() ? active[i] : ~active[i];
+            }
+        }
+        if (query.hasIdRange()) {
+            long[] ids = new long[wordCount];
+            long minId = query.minId() != null ? query.minId() : Long.MIN_VALUE;
+            long maxId = query.maxId() != null ? query.maxId() : Long.MAX_VALUE;
+            for (int position : index.findPositionsByIdRange(minId, maxId)) {
+                ids[position >>> 6] |= 1L << position;
+            }
+            and(base, ids);
+        }
+
+        long[] categoryMatches = union(categories, index.getColumns().categories(), query.categories());
+        long[] companyNameMatches = union(companyNames, index.getColumns().companyNames(), query.companyNames());
+
+        long[] matches = and(and(base.clone(), categoryMatches), companyNameMatches);
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        facets.put(CATEGORY, count(categories, index.getColumns().categories(),
+                and(base.clone(), companyNameMatches), facetLimit));
+        facets.put(COMPANY_NAME, count(companyNames, index.getColumns().companyNames(),
+                and(base.clone(), categoryMatches), facetLimit));
+        return new Selection(matches, facets);
+    }
+
+    /**
+     * @return the products having one of the values, or {@code null} if no values are given.
+     */
+    private long[] union(PositionBitmap[] bitmaps, ProductColumns.StringColumn column, Set<String> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        long[] words = new long[wordCount];
+        for (String value : values) {
+            int code = column.find(value);
+            if (code != ProductColumns.NO_CODE) {
+                bitmaps[code].orInto(words);
+            }
+        }
+        return words;
+    }
+
+    private static Map<String, Integer> count(PositionBitmap[] bitmaps, ProductColumns.StringColumn column,
+                                              long[] words, int limit) {
+        List<int[]> counts = new ArrayList<>();
+        for (int code = 0; code < bitmaps.length; code++) {
+            int count = bitmaps[code].andCardinality(words);
+            if (count > 0) {
+                counts.add(new int[] {code, count});
+            }
+        }
+        // most matches first, then by value (codes are in the order of the sorted values)
+        counts.sort(Comparator.<int[]>comparingInt(count -> -count[1]).thenComparingInt(count -> count[0]));
+
+        Map<String, Integer> facet = new LinkedHashMap<>();
+        for (int[] count : counts.subList(0, Math.min(limit, counts.size()))) {
+            facet.put(column.value(count[0]), count[1]);
+        }
+        return facet;
+    }
+
+    /**
+     * @return the first words, keeping only bits also set in the second ones (all bits if they are {@code null}).
+     */
+    private static long[] and(long[] words, long[] other) {
+        if (other != null) {
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= other[i];
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Result of a faceted query.
+     */
+    public final class Selection {
+        private final long[] matches;
+        private final int size;
+        private final Map<String, Map<String, Integer>> facets;
+
+        private Selection(long[] matches, Map<String, Map<String, Integer>> facets) {
+            this.matches = matches;
+            this.facets = Collections.unmodifiableMap(facets);
+            int count = 0;
+            for (long word : matches) {
+                count += Long.bitCount(word);
+            }
+            this.size = count;
+        }
+
+        /**
+         * @return the number of matching products.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return matches per value of every facet (facet name, then value), most matches first.
+         */
+        public Map<String, Map<String, Integer>> getFacets() {
+            return facets;
+        }
+
+        /**
+         * @param offset number of matching products to skip.
+         * @param limit maximal number of products to return.
+         * @return matching products in document order.
+         */
+        public List<ProductDTO> getProducts(int offset, int limit) {
+            List<ProductDTO> products = new ArrayList<>(Math.min(limit, Math.max(0, size - offset)));
+            int skipped = 0;
+            for (int i = 0; i < matches.length && products.size() < limit; i++) {
+                long word = matches[i];
+                int bits = Long.bitCount(word);
+                if (skipped + bits <= offset) {
+                    skipped += bits;
+                    continue;
+                }
+                while (word != 0 && products.size() < limit) {
+                    int position = i * Long.SIZE + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (skipped++ >= offset) {
+                        products.add(index.getColumns().get(position));
+                    }
+                }
+            }
+            return products;
+        }
+    }
+}
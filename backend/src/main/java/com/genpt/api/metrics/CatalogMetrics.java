@@ -0,0 +1,199 @@
+package com.genpt.api.metrics;
+
+import com.genpt.api.catalog.ProductCatalog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Micrometer meters for the stages of the product pipeline, published by Actuator (e.g. on
+ * {@code /actuator/prometheus}) next to the request ({@code http.server.requests}) and cache
+ * ({@code cache.gets}) metrics, so a latency spike can be traced to a reload or to serialization.
+ * <ul>
+ *     <li>{@code catalog.load} (timer, tags {@code source}, {@code outcome}): building a catalog version.</li>
+ *     <li>{@code catalog.load.bytes} (summary, tag {@code source}): bytes read to build it, the upload size
+ *         for {@code source=upload}.</li>
+ *     <li>{@code catalog.products.mapped} (counter, tag {@code source}): products parsed and mapped to DTOs,
+ *         its rate divided by the rate of {@code catalog.load} is the mapper throughput.</li>
+ *     <li>{@code catalog.serialize} (timer) and {@code catalog.serialize.bytes} (summary): serializing
+ *         all products to JSON, once per catalog version.</li>
+ *     <li>{@code catalog.products} and {@code catalog.version} (gauges): the published catalog.</li>
+ *     <li>{@code catalog.lookup.filter} (counter, tags {@code key}, {@code result}): lookups by name or id and
+ *         whether the Bloom filter rejected the key, passed a key without products (a false positive) or passed a
+ *         key that was found. {@code false_positive / (false_positive + rejected)} is the observed false positive
+ *         rate, {@code catalog.lookup.filter.expected.fpp} (gauge, tag {@code key}) the one expected for the
+ *         published catalog.</li>
+ * </ul>
+ * Loads are recorded once per catalog version and never per product. Lookups increment a counter registered
+ * up front, so the meters cost next to nothing on hot paths.
+ *
+ * @see com.genpt.api.service.ProductService
+ * @see com.genpt.api.util.ProductsJsonWriter
+ */
+@Component
+public class CatalogMetrics {
+
+    /** The XML file was parsed as a whole. */
+    public static final String SOURCE_XML = "xml";
+
+    /** Only the changed chunks of the XML file were parsed. */
+    public static final String SOURCE_INCREMENTAL = "incremental";
+
+    /** The binary snapshot of the XML file was read. */
+    public static final String SOURCE_SNAPSHOT = "snapshot";
+
+    /** An uploaded file was parsed and validated. */
+    public static final String SOURCE_UPLOAD = "upload";
+
+    /** A batch of changes was applied to the previous version. */
+    public static final String SOURCE_CHANGES = "changes";
+
+    /** A lookup by product name. */
+    public static final String KEY_NAME = "name";
+
+    /** A lookup by product id. */
+    public static final String KEY_ID = "id";
+
+    private final MeterRegistry meterRegistry;
+
+    /** Lookup counters by key, then rejected, false positive and found. */
+    private final Map<String, Counter[]> lookups = new HashMap<>();
+
+    /** Last published catalog, read by the gauges. */
+    private final AtomicReference<ProductCatalog> published = new AtomicReference<>();
+
+    public CatalogMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("catalog.products", published, catalog -> catalog.get() == null ? 0 : catalog.get().size())
+                .description("Products in the published catalog")
+                .register(meterRegistry);
+        Gauge.builder("catalog.version", published, catalog -> catalog.get() == null ? 0 : catalog.get().getVersion())
+                .description("Version of the published catalog")
+                .register(meterRegistry);
+        for (String key : List.of(KEY_NAME, KEY_ID)) {
+            lookups.put(key, new Counter[] {
+                    lookupCounter(key, "rejected"), lookupCounter(key, "false_positive"), lookupCounter(key, "found")
+            });
+        }
+        Gauge.builder("catalog.lookup.filter.expected.fpp", published,
+                        catalog -> catalog.get() == null ? 0 : catalog.get().getIndex().nameFilterFalsePositiveRate())
+                .description("Expected false positive rate of the Bloom filter of the published catalog")
+                .tag("key", KEY_NAME)
+                .register(meterRegistry);
+        Gauge.builder("catalog.lookup.filter.expected.fpp", published,
+                        catalog -> catalog.get() == null ? 0 : catalog.get().getIndex().idFilterFalsePositiveRate())
+                .description("Expected false positive rate of the Bloom filter of the published catalog")
+                .tag("key", KEY_ID)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return a sample to pass to {@link #loaded} or {@link #failed} when the load is done.
+     */
+    public Timer.Sample startLoad() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records a catalog version that was built successfully.
+     *
+     * @param sample the sample started before the load.
+     * @param source how the catalog was built, one of the {@code SOURCE_} constants.
+     * @param bytes number of bytes read, {@code 0} if nothing was read.
+     * @param mappedProducts number of products parsed and mapped.
+     */
+    public void loaded(Timer.Sample sample, String source, long bytes, long mappedProducts) {
+        sample.stop(loadTimer(source, "success"));
+        if (bytes > 0) {
+            DistributionSummary.builder("catalog.load.bytes")
+                    .description("Bytes read to build a catalog version")
+                    .baseUnit("bytes")
+                    .tag("source", source)
+                    .register(meterRegistry)
+                    .record(bytes);
+        }
+        Counter.builder("catalog.products.mapped")
+                .description("Products parsed and mapped to DTOs")
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment(mappedProducts);
+    }
+
+    /**
+     * Records a load that failed, e.g. because the file cannot be parsed.
+     *
+     * @param sample the sample started before the load.
+     * @param source how the catalog was built, one of the {@code SOURCE_} constants.
+     */
+    public void failed(Timer.Sample sample, String source) {
+        sample.stop(loadTimer(source, "error"));
+    }
+
+    /**
+     * Records a newly published catalog for the gauges.
+     *
+     * @param catalog the published catalog.
+     */
+    public void published(ProductCatalog catalog) {
+        published.set(catalog);
+    }
+
+    /**
+     * @return a sample to pass to {@link #serialized} when the products are serialized.
+     */
+    public Timer.Sample startSerialization() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records the serialization of all products of a catalog version.
+     *
+     * @param sample the sample started before serializing.
+     * @param bytes size of the serialized products.
+     */
+    public void serialized(Timer.Sample sample, long bytes) {
+        sample.stop(Timer.builder("catalog.serialize")
+                .description("Serialization of all products to JSON")
+                .register(meterRegistry));
+        DistributionSummary.builder("catalog.serialize.bytes")
+                .description("Size of all products serialized to JSON")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    /**
+     * Records a lookup by name or id.
+     *
+     * @param key what was looked up, {@link #KEY_NAME} or {@link #KEY_ID}.
+     * @param passed {@code true} if the Bloom filter did not reject the key.
+     * @param found {@code true} if products were found.
+     */
+    public void lookedUp(String key, boolean passed, boolean found) {
+        lookups.get(key)[!passed ? 0 : found ? 2 : 1].increment();
+    }
+
+    private Counter lookupCounter(String key, String result) {
+        return Counter.builder("catalog.lookup.filter")
+                .description("Lookups by the result of the Bloom filter")
+                .tag("key", key)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Timer loadTimer(String source, String outcome) {
+        return Timer.builder("catalog.load")
+                .description("Building a new catalog version")
+                .tag("source", source)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,424 @@
+package com.genpt.api.parser;
+
+import com.genpt.api.exception.XmlParsingException;
+import com.genpt.api.model.Product;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Parser reading a products XML file on all cores.
+ * <p>
+ * The file is split into chunks of about {@code chunkSize} bytes, each starting at a {@code <Product} tag.
+ * Every chunk is memory-mapped and parsed by {@link ProductXmlParser} on a {@link ForkJoinPool}, framed by the
+ * head of the file (XML declaration and root start tag, so encodings and namespaces still apply) and the root end tag.
+ * Results are handed to the consumer in document order on the calling thread, and only a few chunks per thread
+ * are parsed ahead, so memory use does not grow with the file size.
+ * <p>
+ * Chunk boundaries are found by searching the bytes for {@code <Product}, which could also match inside a comment
+ * or a CDATA section. Such a split always makes the preceding chunk malformed, so if any chunk fails, the rest of
+ * the file is parsed sequentially instead. This gives the same products, or the same error with its actual line
+ * number, as {@link ProductXmlParser}. Files smaller than two chunks are parsed sequentially right away.
+ *
+ * @see ProductXmlParser
+ * @see com.genpt.api.service.ProductService
+ */
+@Log4j2
+@Component
+public class ParallelProductXmlParser {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    private static final byte[] PRODUCT_START_TAG =
+            ("<" + ProductXmlParser.PRODUCT_ELEMENT).getBytes(StandardCharsets.US_ASCII);
+
+    private static final int SEARCH_WINDOW = 1 << 16;
+
+    /** Number of chunks per thread parsed ahead of the consumer. */
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    private final ProductXmlParser productXmlParser;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * @param productXmlParser parser of the single chunks.
+     * @param parallelism number of parsing threads, {@code 0} for one per available processor.
+     */
+    @Autowired
+    public ParallelProductXmlParser(ProductXmlParser productXmlParser,
+                                    @Value("${files.xml.parser.parallelism:0}") int parallelism) {
+        this(productXmlParser, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param productXmlParser parser of the single chunks.
+     * @param parallelism number of parsing threads, {@code 0} for one per available processor.
+     * @param chunkSize approximate size of the chunks in bytes.
+     */
+    public ParallelProductXmlParser(ProductXmlParser productXmlParser, int parallelism, int chunkSize) {
+        this.productXmlParser = productXmlParser;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.chunkSize = chunkSize;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Parses the given XML file and passes every product to the consumer in document order.
+     * The consumer is called on the calling thread.
+     *
+     * @param file the XML file.
+     * @param consumer callback receiving the parsed products.
+     * @return the number of parsed products.
+     * @throws XmlParsingException if the file is not a valid products XML.
+     * @throws IOException if the file cannot be read.
+     */
+    public long parse(Path file, Consumer<? super Product> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Long> boundaries = findChunkBoundaries(channel);
+            if (boundaries.size() <= 2) {
+                return parseSequentially(file, 0, consumer);
+            }
+
+            byte[] head = read(channel, 0, boundaries.get(0));
+            byte[] rootEndTag = rootEndTag(head);
+            if (rootEndTag == null) {
+                return parseSequentially(file, 0, consumer);
+            }
+
+            int chunks = boundaries.size() - 1;
+            int ahead = pool.getParallelism() * CHUNKS_AHEAD_PER_THREAD;
+            Deque<ForkJoinTask<List<Product>>> pending = new ArrayDeque<>();
+            int submitted = 0;
+            long count = 0;
+            try {
+                for (int chunk = 0; chunk < chunks; chunk++) {
+                    while (submitted < chunks && submitted < chunk + ahead) {
+                        long start = boundaries.get(submitted);
+                        long end = boundaries.get(submitted + 1);
+                        byte[] tail = submitted == chunks - 1 ? new byte[0] : rootEndTag;
+                        pending.add(pool.submit(() -> parseChunk(channel, head, start, end, tail)));
+                        submitted++;
+                    }
+
+                    List<Product> products;
+                    try {
+                        products = join(pending.poll());
+                    }
+                    catch (XmlParsingException e) {
+                        log.debug("Chunk {} of {} could not be parsed, continuing sequentially", chunk, file, e);
+                        return count + parseSequentially(file, count, consumer);
+                    }
+                    products.forEach(consumer);
+                    count += products.size();
+                }
+                return count;
+            }
+            finally {
+                pending.forEach(task -> task.cancel(true));
+            }
+        }
+    }
+
+    /**
+     * Splits the file into content-defined chunks, see {@link ProductChunks}.
+     *
+     * @param file the XML file.
+     * @return the chunks of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public ProductChunks scanChunks(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ProductChunks.scan(channel);
+        }
+    }
+
+    /**
+     * Reads a new version of a file, parsing only the chunks that are not part of the previous version.
+     * Unchanged chunks are passed to the consumer as ranges of product positions in the previous version,
+     * the products of changed chunks are parsed on the pool like in {@link #parse(Path, Consumer)}.
+     * Both are passed in document order, on the calling thread.
+     *
+     * @param file the new version of the file.
+     * @param chunks chunks of the new version, see {@link #scanChunks(Path)}.
+     * @param previous chunks of the previous version, with product positions matching the previously read products.
+     * @param consumer callback receiving the unchanged ranges and the parsed products.
+     * @return the number of parsed products, without the unchanged ones.
+     * @throws XmlParsingException if a changed chunk is not valid or contains another number of products than
+     *         found by the chunk scan, in which case the whole file has to be parsed.
+     * @throws IOException if the file cannot be read.
+     */
+    public long parseChanges(Path file, ProductChunks chunks, ProductChunks previous, ChunkConsumer consumer)
+            throws IOException {
+        int[] matches = chunks.match(previous);
+        List<Integer> changed = new ArrayList<>();
+        for (int chunk = 0; chunk < matches.length; chunk++) {
+            if (matches[chunk] < 0) {
+                changed.add(chunk);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            byte[] head = read(channel, 0, chunks.size() == 0 ? channel.size() : chunks.headLength());
+            byte[] rootEndTag = rootEndTag(head);
+            if (rootEndTag == null && !changed.isEmpty()) {
+                throw new XmlParsingException("Root element of " + file + " not found");
+            }
+
+            int ahead = pool.getParallelism() * CHUNKS_AHEAD_PER_THREAD;
+            Deque<ForkJoinTask<List<Product>>> pending = new ArrayDeque<>();
+            int submitted = 0;
+            long count = 0;
+            try {
+                for (int chunk = 0; chunk < matches.length; chunk++) {
+                    if (matches[chunk] >= 0) {
+                        int from = previous.firstProduct(matches[chunk]);
+                        consumer.unchanged(from, from + previous.productCount(matches[chunk]));
+                        continue;
+                    }
+                    while (submitted < changed.size() && pending.size() < ahead) {
+                        int next = changed.get(submitted++);
+                        long start = chunks.start(next);
+                        long end = chunks.end(next);
+                        byte[] tail = next == chunks.size() - 1 ? new byte[0] : rootEndTag;
+                        pending.add(pool.submit(() -> parseChunk(channel, head, start, end, tail)));
+                    }
+
+                    List<Product> products = join(pending.poll());
+                    if (products.size() != chunks.productCount(chunk)) {
+                        throw new XmlParsingException(String.format("Chunk %d of %s has %d products instead of %d",
+                                chunk, file, products.size(), chunks.productCount(chunk)));
+                    }
+                    products.forEach(consumer::changed);
+                    count += products.size();
+                }
+                return count;
+            }
+            finally {
+                pending.forEach(task -> task.cancel(true));
+            }
+        }
+    }
+
+    /**
+     * Parses the file sequentially, skipping the given number of products which were already consumed.
+     */
+    private long parseSequentially(Path file, long skip, Consumer<? super Product> consumer) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file), SEARCH_WINDOW)) {
+            long[] index = {0};
+            productXmlParser.parse(inputStream, product -> {
+                if (index[0]++ >= skip) {
+                    consumer.accept(product);
+                }
+            });
+            return Math.max(0, index[0] - skip);
+        }
+    }
+
+    private List<Product> parseChunk(FileChannel channel, byte[] head, long start, long end, byte[] tail)
+            throws IOException {
+        ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        InputStream inputStream = new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(head), new ByteBufferInputStream(chunk), new ByteArrayInputStream(tail))));
+        List<Product> products = new ArrayList<>();
+        productXmlParser.parse(inputStream, products::add);
+        return products;
+    }
+
+    /**
+     * Returns the offsets of the chunks: the first {@code <Product} tag, the first tag after every
+     * {@code chunkSize} bytes and finally the file size. Without any product only the file size is returned.
+     */
+    private List<Long> findChunkBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        long next = 0;
+        while (next < size) {
+            long boundary = findProductStartTag(channel, next, size);
+            if (boundary < 0) {
+                break;
+            }
+            boundaries.add(boundary);
+            next = boundary + Math.max(chunkSize, PRODUCT_START_TAG.length + 1);
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /**
+     * @return offset of the first {@code <Product} tag (but not {@code <Products}) at or after {@code from},
+     *         or {@code -1}.
+     */
+    private static long findProductStartTag(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SEARCH_WINDOW);
+        for (long position = from; position < size; ) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                return -1;
+            }
+            for (int i = 0; i + PRODUCT_START_TAG.length < read; i++) {
+                if (matchesProductStartTag(window, i)) {
+                    return position + i;
+                }
+            }
+            // the last bytes of the window are searched again at the start of the next one
+            position += Math.max(1, read - PRODUCT_START_TAG.length);
+            if (position + PRODUCT_START_TAG.length >= size) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesProductStartTag(ByteBuffer window, int offset) {
+        for (int i = 0; i < PRODUCT_START_TAG.length; i++) {
+            if (window.get(offset + i) != PRODUCT_START_TAG[i]) {
+                return false;
+            }
+        }
+        byte next = window.get(offset + PRODUCT_START_TAG.length);
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\n' || next == '\r';
+    }
+
+    /**
+     * Reads the root element name from the head of the file.
+     *
+     * @return the end tag of the root element, or {@code null} if the head is not as expected.
+     */
+    private static byte[] rootEndTag(byte[] head) {
+        try {
+            XMLStreamReader reader = XMLInputFactory.newFactory().createXMLStreamReader(new ByteArrayInputStream(head));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        String prefix = reader.getPrefix();
+                        String name = prefix == null || prefix.isEmpty()
+                                ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+                        return ("</" + name + ">").getBytes(encoding(reader));
+                    }
+                }
+                return null;
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (XMLStreamException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Charset encoding(XMLStreamReader reader) {
+        String encoding = reader.getEncoding() != null ? reader.getEncoding() : reader.getCharacterEncodingScheme();
+        return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+    }
+
+    private static byte[] read(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.array();
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Receives the content of a file read by {@link #parseChanges}.
+     */
+    public interface ChunkConsumer {
+
+        /**
+         * Called for products that are unchanged since the previous version.
+         *
+         * @param from position of the first product in the previous version.
+         * @param to position after the last product in the previous version.
+         */
+        void unchanged(int from, int to);
+
+        /**
+         * Called for every product of a changed chunk.
+         *
+         * @param product the parsed product.
+         */
+        void changed(Product product);
+    }
+
+    /**
+     * Input stream over a (memory-mapped) buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.genpt.api.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Content-defined chunks of a products XML file, used to re-read only the parts of a file that have changed.
+ * <p>
+ * Every chunk starts at a {@code <Product} tag. Whether a tag starts a new chunk depends only on a hash of the bytes
+ * of the product before it (about one in {@value #AVERAGE_CHUNK_PRODUCTS} tags does), not on its offset, so
+ * changing, inserting or removing a product changes only the chunk around it and all other chunks keep their
+ * content. Every chunk is identified by a 64-bit hash of its bytes (CRC-32 and CRC-32C, both computed by intrinsics)
+ * and remembers the number and position of its products, so unchanged chunks of a new version of the file can be
+ * copied from the already loaded products instead of being parsed.
+ * <p>
+ * Chunks are found by searching the bytes, like in {@link ParallelProductXmlParser}, and a {@code <Product} inside
+ * a comment or a CDATA section would be counted as a product as well. Users of the positions therefore have to check
+ * that the total number of products matches the parsed file.
+ *
+ * @see ParallelProductXmlParser#parseChanges
+ */
+public final class ProductChunks {
+
+    /** Average number of products per chunk, a power of two. */
+    static final int AVERAGE_CHUNK_PRODUCTS = 64;
+
+    private static final byte[] PRODUCT_START_TAG =
+            ("<" + ProductXmlParser.PRODUCT_ELEMENT).getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Hash of the bytes before the first product (XML declaration and root start tag). */
+    private final long headHash;
+
+    /** Start offset of every chunk, with the file size as last element. */
+    private final long[] offsets;
+
+    private final long[] hashes;
+
+    /** Position of the first product of every chunk, with the number of all products as last element. */
+    private final int[] firstProducts;
+
+    private ProductChunks(long headHash, long[] offsets, long[] hashes, int[] firstProducts) {
+        this.headHash = headHash;
+        this.offsets = offsets;
+        this.hashes = hashes;
+        this.firstProducts = firstProducts;
+    }
+
+    /**
+     * Splits the file into chunks.
+     *
+     * @param channel the XML file.
+     * @return the chunks of the file, none if it has no products.
+     * @throws IOException if the file cannot be read.
+     */
+    public static ProductChunks scan(FileChannel channel) throws IOException {
+        long size = channel.size();
+        LongArray offsets = new LongArray();
+        LongArray productCounts = new LongArray();
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        int matched = 0;
+        int productHash = 0;
+        long chunkProducts = 0;
+        for (long position = 0; position < size; ) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                byte b = bytes[i];
+                productHash = productHash * 31 + b;
+                if (matched == PRODUCT_START_TAG.length) {
+                    if (b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                        long tag = position + i - PRODUCT_START_TAG.length;
+                        if (offsets.size == 0 || isChunkStart(productHash)) {
+                            if (offsets.size > 0) {
+                                productCounts.add(chunkProducts);
+                            }
+                            offsets.add(tag);
+                            chunkProducts = 0;
+                        }
+                        chunkProducts++;
+                        productHash = 0;
+                    }
+                    matched = 0;
+                }
+                else if (b == PRODUCT_START_TAG[matched]) {
+                    matched++;
+                }
+                else {
+                    matched = b == '<' ? 1 : 0;
+                }
+            }
+            position += read;
+        }
+        if (offsets.size > 0) {
+            productCounts.add(chunkProducts);
+        }
+
+        int chunks = offsets.size;
+        long[] chunkOffsets = Arrays.copyOf(offsets.values, chunks + 1);
+        chunkOffsets[chunks] = size;
+        int[] firstProducts = new int[chunks + 1];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            firstProducts[chunk + 1] = Math.toIntExact(firstProducts[chunk] + productCounts.values[chunk]);
+        }
+        long[] hashes = new long[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            hashes[chunk] = hash(channel, chunkOffsets[chunk], chunkOffsets[chunk + 1], buffer);
+        }
+        long headHash = hash(channel, 0, chunkOffsets[0], buffer);
+        return new ProductChunks(headHash, chunkOffsets, hashes, firstProducts);
+    }
+
+    /**
+     * @return the number of chunks.
+     */
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * @return the number of products counted in all chunks.
+     */
+    public int productCount() {
+        return firstProducts[firstProducts.length - 1];
+    }
+
+    public long start(int chunk) {
+        return offsets[chunk];
+    }
+
+    public long end(int chunk) {
+        return offsets[chunk + 1];
+    }
+
+    /**
+     * @return the start offset of the first product, or the file size if there is none.
+     */
+    public long headLength() {
+        return offsets[0];
+    }
+
+    /**
+     * @return position of the first product of the chunk.
+     */
+    public int firstProduct(int chunk) {
+        return firstProducts[chunk];
+    }
+
+    /**
+     * @return number of products counted in the chunk.
+     */
+    public int productCount(int chunk) {
+        return firstProducts[chunk + 1] - firstProducts[chunk];
+    }
+
+    /**
+     * @param previous chunks of the previous version of the file.
+     * @return for every chunk, the chunk of the previous version with the same content, or {@code -1} if it is new.
+     *         All chunks are new if the head of the file has changed.
+     */
+    public int[] match(ProductChunks previous) {
+        int[] matches = new int[size()];
+        Arrays.fill(matches, -1);
+        if (previous.headHash != headHash) {
+            return matches;
+        }
+        Map<Long, Integer> previousChunks = new HashMap<>(previous.size() * 2);
+        for (int chunk = previous.size() - 1; chunk >= 0; chunk--) {
+            previousChunks.put(previous.hashes[chunk], chunk);
+        }
+        for (int chunk = 0; chunk < matches.length; chunk++) {
+            Integer match = previousChunks.get(hashes[chunk]);
+            if (match != null && end(chunk) - start(chunk) == previous.end(match) - previous.start(match)) {
+                matches[chunk] = match;
+            }
+        }
+        return matches;
+    }
+
+    private static boolean isChunkStart(int productHash) {
+        // spread the bits, the low bits of a polynomial hash of similar products are not well distributed
+        int mixed = productHash * 0x9E3779B9;
+        return (mixed >>> 26 & (AVERAGE_CHUNK_PRODUCTS - 1)) == 0;
+    }
+
+    private static long hash(FileChannel channel, long from, long to, ByteBuffer buffer) throws IOException {
+        CRC32 crc32 = new CRC32();
+        CRC32C crc32c = new CRC32C();
+        for (long position = from; position < to; ) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            crc32.update(buffer.duplicate());
+            crc32c.update(buffer);
+            position += read;
+        }
+        return crc32.getValue() << 32 | crc32c.getValue();
+    }
+
+    /**
+     * Growable {@code long[]}.
+     */
+    private static final class LongArray {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
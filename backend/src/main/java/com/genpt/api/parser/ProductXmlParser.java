@@ -0,0 +1,166 @@
+package com.genpt.api.parser;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.genpt.api.exception.XmlParsingException;
+import com.genpt.api.model.Product;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser for the products XML file.
+ * <p>
+ * Instead of binding the whole document into a {@code List<Product>}, the file is read with StAX
+ * and every {@code <Product>} element is bound separately, so only one record is kept in memory
+ * at a time. The {@link XmlMapper} is thread-safe and shared between calls.
+ *
+ * @see Product
+ * @see com.genpt.api.service.ProductService
+ */
+@Component
+public class ProductXmlParser {
+
+    /** Local name of the root element. */
+    public static final String PRODUCTS_ELEMENT = "Products";
+    
+    /** Local name of the element holding a single product. */
+    public static final String PRODUCT_ELEMENT = "Product";
+
+    private final XmlMapper xmlMapper = new XmlMapper();
+
+    /**
+     * Parses the given XML input and passes every product to the consumer in document order.
+     * The stream is not closed by this method.
+     *
+     * @param inputStream XML content.
+     * @param consumer callback receiving the parsed products.
+     * @return the number of parsed products.
+     * @throws XmlParsingException if the content is not a valid products XML.
+     */
+    public long parse(InputStream inputStream, Consumer<? super Product> consumer) {
+        return parse(inputStream, consumer, false);
+    }
+    
+    /**
+     * Parses the given XML input like {@link #parse(InputStream, Consumer)}, but additionally validates it:
+     * the root element has to be {@code <Products>}, and every product needs an {@code id} attribute
+     * and a non-blank {@code <Name>}. The first violation is reported with its line number.
+     * The stream is not closed by this method.
+     *
+     * @param inputStream XML content.
+     * @param consumer callback receiving the parsed products.
+     * @return the number of parsed products.
+     * @throws XmlParsingException if the content is not a valid products XML.
+     */
+    public long parseAndValidate(InputStream inputStream, Consumer<? super Product> consumer) {
+        return parse(inputStream, consumer, true);
+    }
+    
+    private long parse(InputStream inputStream, Consumer<? super Product> consumer, boolean validate) {
+        XMLStreamReader reader = createReader(inputStream);
+        try {
+            if (validate) {
+                validateRootElement(reader);
+            }
+            long count = 0;
+            Product product;
+            while ((product = nextProduct(reader, validate)) != null) {
+                consumer.accept(product);
+                count++;
+            }
+            return count;
+        }
+        finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Advances the reader to the next {@code <Product>} element and binds it.
+     *
+     * @return the next product or {@code null} when the end of the document was reached.
+     */
+    private Product nextProduct(XMLStreamReader reader, boolean validate) {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                        && PRODUCT_ELEMENT.equals(reader.getLocalName())) {
+                    int line = reader.getLocation().getLineNumber();
+                    Product product = xmlMapper.readValue(reader, Product.class);
+                    if (validate) {
+                        validateProduct(product, line);
+                    }
+                    return product;
+                }
+            }
+            return null;
+        }
+        catch (XMLStreamException | IOException e) {
+            throw new XmlParsingException(errorMessage(reader, e), e);
+        }
+    }
+    
+    private static void validateRootElement(XMLStreamReader reader) {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if (!PRODUCTS_ELEMENT.equals(reader.getLocalName())) {
+                        throw new XmlParsingException(String.format(
+                                "Invalid XML at line %d: root element has to be <%s>, was: <%s>",
+                                reader.getLocation().getLineNumber(), PRODUCTS_ELEMENT, reader.getLocalName()));
+                    }
+                    return;
+                }
+            }
+            throw new XmlParsingException("Invalid XML: root element <" + PRODUCTS_ELEMENT + "> is missing");
+        }
+        catch (XMLStreamException e) {
+            throw new XmlParsingException(errorMessage(reader, e), e);
+        }
+    }
+    
+    private static void validateProduct(Product product, int line) {
+        if (product.getId() == null) {
+            throw new XmlParsingException(String.format("Invalid product at line %d: attribute 'id' is missing", line));
+        }
+        if (product.getName() == null || product.getName().isBlank()) {
+            throw new XmlParsingException(String.format("Invalid product at line %d: element <Name> is missing", line));
+        }
+    }
+
+    private XMLStreamReader createReader(InputStream inputStream) {
+        try {
+            XMLInputFactory inputFactory = xmlMapper.getFactory().getXMLInputFactory();
+            return inputFactory.createXMLStreamReader(inputStream);
+        }
+        catch (XMLStreamException e) {
+            throw new XmlParsingException("Error while opening XML stream", e);
+        }
+    }
+
+    private static String errorMessage(XMLStreamReader reader, Exception e) {
+        String message = "Error while parsing XML";
+        try {
+            message += " at line " + reader.getLocation().getLineNumber();
+        }
+        catch (RuntimeException ignored) {
+            // location is not available once the reader failed
+        }
+        return message + ": " + e.getMessage();
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        try {
+            reader.close();
+        }
+        catch (XMLStreamException ignored) {
+            // nothing to do, the underlying stream is closed by the caller
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.genpt.api.parser;
+
+import com.genpt.api.dto.ProductDTO;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming writer for the products XML file, the counterpart of {@link ProductXmlParser}.
+ * <p>
+ * Products are written one at a time with StAX in the layout of the original file, so a catalog
+ * written back to disk can be read again by the parser and diffed against the previous file.
+ * {@code null} values are left out. Values with characters XML cannot represent (e.g. control characters other
+ * than tab and line breaks) are rejected instead of being written as a file the parser cannot read again.
+ *
+ * @see ProductXmlParser
+ * @see com.genpt.api.service.ProductService
+ */
+@Component
+public class ProductXmlWriter {
+
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+
+    /**
+     * Writes the given products as a products XML document in UTF-8. The stream is not closed by this method.
+     *
+     * @param products products in document order.
+     * @param outputStream target of the XML content.
+     * @throws IOException if the content cannot be written, or a value is not {@link #isXmlText(String) XML text}.
+     */
+    public void write(Iterable<ProductDTO> products, OutputStream outputStream) throws IOException {
+        try {
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(outputStream, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement(ProductXmlParser.PRODUCTS_ELEMENT);
+            for (ProductDTO product : products) {
+                writer.writeCharacters("\n    ");
+                writer.writeStartElement(ProductXmlParser.PRODUCT_ELEMENT);
+                if (product.getId() != null) {
+                    writer.writeAttribute("id", product.getId().toString());
+                }
+                writeElement(writer, "Name", product.getName());
+                writeElement(writer, "Category", product.getCategory());
+                writeElement(writer, "PartNumberNR", product.getPartNumberNR());
+                writeElement(writer, "CompanyName", product.getCompanyName());
+                writeElement(writer, "Active", Boolean.toString(product.isActive()));
+                writer.writeCharacters("\n    ");
+                writer.writeEndElement();
+            }
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Error while writing XML", e);
+        }
+    }
+
+    /**
+     * @param value a text value.
+     * @return {@code true} if the value consists of characters allowed in XML 1.0 only, and can be written.
+     */
+    public static boolean isXmlText(String value) {
+        for (int i = 0; i < value.length(); ) {
+            int c = value.codePointAt(i);
+            boolean allowed = c == 0x9 || c == 0xA || c == 0xD
+                    || (c >= 0x20 && c <= 0xD7FF)
+                    || (c >= 0xE000 && c <= 0xFFFD)
+                    || (c >= 0x10000 && c <= 0x10FFFF);
+            if (!allowed) {
+                // includes unpaired surrogates, which codePointAt returns as they are
+                return false;
+            }
+            i += Character.charCount(c);
+        }
+        return true;
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        if (!isXmlText(value)) {
+            throw new XMLStreamException("Value of " + name + " contains characters not allowed in XML");
+        }
+        writer.writeCharacters("\n        ");
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+}
@@ -0,0 +1,99 @@
+package com.genpt.api.service;
+
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.dto.CatalogEventDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent events announcing every published catalog version, after uploads, changes and reloads of the file.
+ * <p>
+ * Versions are emitted into a Reactor sink which replays the latest one to new subscribers, and every subscriber
+ * is a {@link Flux} returned from a request handler, which Spring MVC writes asynchronously: an idle subscriber
+ * holds a connection but no thread. Emitting never blocks the thread publishing the catalog. Every subscriber keeps
+ * only the latest version it has not been sent yet, so a slow or stalled client skips versions instead of buffering
+ * them or delaying anyone else, and versions older than the last one sent are skipped, so a subscriber never sees
+ * a version go back. Events are written on Spring MVC's task executor, never on the {@link
+ * org.springframework.scheduling.TaskScheduler} running reloads and compactions.
+ * A subscriber is dropped when sending fails or after {@code catalog.events.timeout}, after which clients
+ * (e.g. a browser {@code EventSource}) reconnect.
+ *
+ * @see ProductService#getCatalog(String)
+ */
+@Component
+public class CatalogEvents {
+
+    /** Name of the event announcing a catalog version. */
+    public static final String CATALOG = "catalog";
+
+    /** How long {@link #published} retries while another thread emits a version at the same time. */
+    private static final Duration EMIT_RETRY = Duration.ofSeconds(1);
+
+    private final Duration timeout;
+
+    private final Sinks.Many<CatalogEventDTO> versions = Sinks.many().replay().latest();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public CatalogEvents(@Value("${catalog.events.timeout:PT30M}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Subscribes to the versions published from now on.
+     *
+     * @param current the current catalog, sent as the first event unless a newer version was published since.
+     * @return the events to return from the request handler.
+     */
+    public Flux<ServerSentEvent<CatalogEventDTO>> subscribe(ProductCatalog current) {
+        return Flux.defer(() -> {
+                    long[] lastSent = {Long.MIN_VALUE};
+                    return Flux.concat(Flux.just(toEvent(current)), versions.asFlux().onBackpressureLatest())
+                            .filter(event -> {
+                                if (event.getVersion() <= lastSent[0]) {
+                                    return false;
+                                }
+                                lastSent[0] = event.getVersion();
+                                return true;
+                            });
+                })
+                .map(event -> ServerSentEvent.builder(event)
+                        .event(CATALOG)
+                        .id(Long.toString(event.getVersion()))
+                        .build())
+                .take(timeout)
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    /**
+     * Announces a newly published catalog to all subscribers.
+     *
+     * @param catalog the published catalog.
+     */
+    public void published(ProductCatalog catalog) {
+        versions.emitNext(toEvent(catalog), Sinks.EmitFailureHandler.busyLooping(EMIT_RETRY));
+    }
+
+    /**
+     * @return the number of current subscribers.
+     */
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    private static CatalogEventDTO toEvent(ProductCatalog catalog) {
+        return CatalogEventDTO.builder()
+                .version(catalog.getVersion())
+                .products(catalog.size())
+                .lastModified(catalog.getLastModified())
+                .etag(catalog.getETag())
+                .build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.genpt.api.service;
+
+import com.genpt.api.exception.XmlParsingException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Watches the XML file and reloads the catalog in the background when the file is changed outside the application,
+ * e.g. when operators drop a new catalog with rsync or replace it on a mounted volume.
+ * <p>
+ * The directory of the file is watched with a {@link WatchService}. Writing a large file (or rsync writing a
+ * temporary file and renaming it) causes a burst of events, so the reload is debounced: it starts only after
+ * no event was seen for {@code files.xml.watch.debounce}. A file that is still incomplete at that point fails
+ * to parse and the current catalog is kept until the next change. Set {@code files.xml.watch.enabled: false}
+ * to disable watching.
+ * <p>
+ * Reloads run on the application's {@link TaskScheduler}, which uses virtual threads when
+ * {@code spring.threads.virtual.enabled} is set on Java 21.
+ *
+ * @see ProductService#reloadFile(String)
+ */
+@Log4j2
+@Component
+public class CatalogFileWatcher {
+
+    private final ProductService productService;
+    private final String xmlFileName;
+    private final boolean enabled;
+    private final Duration debounce;
+
+    private final TaskScheduler taskScheduler;
+
+    private WatchService watchService;
+    private ScheduledFuture<?> pendingReload;
+
+    public CatalogFileWatcher(ProductService productService,
+                              TaskScheduler taskScheduler,
+                              @Value("${files.xml.products}") String xmlFileName,
+                              @Value("${files.xml.watch.enabled:true}") boolean enabled,
+                              @Value("${files.xml.watch.debounce:PT2S}") Duration debounce) {
+        this.productService = productService;
+        this.taskScheduler = taskScheduler;
+        this.xmlFileName = xmlFileName;
+        this.enabled = enabled;
+        this.debounce = debounce;
+    }
+
+    /**
+     * Starts watching the directory of the XML file, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Path xmlFile;
+        try {
+            xmlFile = productService.getXmlFilePath(xmlFileName).toAbsolutePath();
+        }
+        catch (XmlParsingException e) {
+            log.warn("Not watching {}, the file cannot be resolved", xmlFileName);
+            return;
+        }
+
+        Path directory = xmlFile.getParent();
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException e) {
+            log.warn("Not watching {}, the directory cannot be watched", xmlFile, e);
+            return;
+        }
+
+        Thread watcher = new Thread(() -> watch(xmlFile.getFileName()), "catalog-file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching {} for changes", xmlFile);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        synchronized (this) {
+            if (pendingReload != null) {
+                pendingReload.cancel(false);
+            }
+        }
+    }
+
+    private void watch(Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // OVERFLOW events have no context, something may have been missed
+                    if (event.context() == null || fileName.equals(event.context())) {
+                        scheduleReload();
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Stopped watching {}, the directory is no longer accessible", fileName);
+                    return;
+                }
+            }
+        }
+        catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedules a reload after the debounce delay, replacing a reload that has not started yet.
+     */
+    private synchronized void scheduleReload() {
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = taskScheduler.schedule(this::reload, Instant.now().plus(debounce));
+    }
+
+    private void reload() {
+        try {
+            productService.reloadFile(xmlFileName);
+        }
+        catch (RuntimeException e) {
+            log.warn("Could not reload {}, keeping the current catalog", xmlFileName, e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.genpt.api.service;
+
+import com.genpt.api.exception.XmlParsingException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically writes the changes applied through the api back into the XML file, so the change log
+ * stays short and a restart does not have to replay a long history.
+ * The interval is configured with {@code files.xml.changes.compaction-interval}.
+ *
+ * @see ProductService#compactChanges(String)
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class ChangeLogCompactionTask {
+    
+    private final ProductService productService;
+    
+    /**
+     *  XML file name from application.yml
+     */
+    @Value("${files.xml.products}")
+    private String xmlFileName;
+    
+    @Scheduled(initialDelayString = "${files.xml.changes.compaction-interval:PT10M}",
+            fixedDelayString = "${files.xml.changes.compaction-interval:PT10M}")
+    public void compactChanges() {
+        try {
+            productService.compactChanges(xmlFileName);
+        }
+        catch (XmlParsingException e) {
+            // already logged, the changes stay in the log and are compacted by the next run
+            log.debug("Compaction failed, retrying in the next interval", e);
+        }
+    }
+}
@@ -1,44 +1,145 @@
 package com.genpt.api.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.genpt.api.catalog.CatalogChangeLog;
+import com.genpt.api.catalog.CatalogSnapshotStore;
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.catalog.ProductColumns;
+import com.genpt.api.config.CacheConfig;
+import com.genpt.api.dto.ProductBatchDTO;
+import com.genpt.api.dto.ProductBatchRequestDTO;
+import com.genpt.api.dto.ProductChangesDTO;
 import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.dto.ProductPageDTO;
+import com.genpt.api.dto.ProductQueryDTO;
 import com.genpt.api.exception.EmptyResourceException;
+import com.genpt.api.exception.InvalidXmlFileException;
 import com.genpt.api.exception.ResourceNotFoundException;
 import com.genpt.api.exception.XmlParsingException;
+import com.genpt.api.index.FacetIndex;
+import com.genpt.api.index.FacetQuery;
+import com.genpt.api.index.PartNumberTrie;
+import com.genpt.api.index.ProductIndex;
 import com.genpt.api.mapper.ProductMapper;
+import com.genpt.api.metrics.CatalogMetrics;
 import com.genpt.api.model.Product;
+import com.genpt.api.parser.ParallelProductXmlParser;
+import com.genpt.api.parser.ProductChunks;
+import com.genpt.api.parser.ProductXmlParser;
+import com.genpt.api.parser.ProductXmlWriter;
+import com.genpt.api.util.PageCursor;
+import com.genpt.api.util.ProductProjection;
+import com.genpt.api.util.TeeInputStream;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ResourceUtils;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 @Log4j2
 @Service
 @RequiredArgsConstructor
 public class ProductService {
     
+    /** Largest page that can be requested from {@link #getProductsPage}. */
+    public static final int MAX_PAGE_SIZE = 1000;
+    
+    /** Largest number of results that can be requested from {@link #searchProducts}. */
+    public static final int MAX_SEARCH_LIMIT = 100;
+    
+    /** Largest number of values per facet that can be requested from {@link #queryProducts}. */
+    public static final int MAX_FACET_LIMIT = 1000;
+    
+    /** Largest number of names and ids that can be looked up at once by {@link #findProducts}. */
+    public static final int MAX_BATCH_SIZE = 1000;
+    
     /** Mapper function for conversion between Product and ProductDTO. */
     private final ProductMapper productMapper;
     
+    /** Streaming parser reading products one at a time from the XML file. */
+    private final ProductXmlParser productXmlParser;
+    
+    /** Parser reading large XML files in chunks on all cores. */
+    private final ParallelProductXmlParser parallelProductXmlParser;
+    
+    /** Writer used to compact the change log into the XML file. */
+    private final ProductXmlWriter productXmlWriter;
+    
     /**
      * ResourceLoader used for loading resources in the application.
      * In this class it is responsible for loading products.xml file form resources folder.
      */
     private final ResourceLoader resourceLoader;
     
+    /** Binary snapshots of parsed XML files, used to skip parsing on startup. */
+    private final CatalogSnapshotStore catalogSnapshotStore;
+    
+    /** Log of the changes applied since the XML file was last written. */
+    private final CatalogChangeLog catalogChangeLog;
+    
+    /** Meters of catalog loads and of the published catalog. */
+    private final CatalogMetrics catalogMetrics;
+    
+    /** Subscribers notified of every published catalog. */
+    private final CatalogEvents catalogEvents;
+    
+    
+    /** Currently published catalog snapshot, {@code null} until the file is loaded for the first time. */
+    private final AtomicReference<ProductCatalog> catalog = new AtomicReference<>();
+    
+    /**
+     * Load of the catalog in progress, {@code null} if there is none. Requests arriving while the catalog is
+     * loaded on first access wait for this load instead of parsing the file once more.
+     */
+    private final AtomicReference<CompletableFuture<ProductCatalog>> pendingLoad = new AtomicReference<>();
+    
+    /** Source of catalog version numbers. */
+    private final AtomicLong catalogVersions = new AtomicLong();
+    
+    /**
+     * Serializes everything that publishes a new catalog, so that no change is lost or applied to an old version.
+     * A lock rather than a monitor, so that virtual threads waiting for a reload do not pin their carrier thread.
+     */
+    private final ReentrantLock updateLock = new ReentrantLock();
+    
+    /** Content of the XML file as last read or written by this service, {@code null} until it is loaded. */
+    private volatile XmlFileState xmlFileState;
+    
     
     /**
      * Reads the XML file, parses it and returns the number of products.
@@ -46,116 +147,886 @@ public class ProductService {
      * @param fileName the name of the xml file.
      * @return the number of products in the XML file.
      * @throws XmlParsingException if an error occurs while parsing the XML file.
-     * @see #parseXmlFile(String fileName)
-     * @see #extractFileBytes(String)
+     * @see #getCatalog(String fileName)
+     * @see #getXmlFileResource(String)
      */
-    @Cacheable(value = "products", key = "'readXmlFile'")
     public int readXmlFile(String fileName) {
-        return parseXmlFile(fileName).size();
+        return getCatalog(fileName).size();
     }
     
     /**
      * Reads the XML file, parses it and returns a list of all products mapped to their DTO object.
+     * The list is a view of the shared catalog, so it is not cached separately.
      *
      * @param fileName the name of the xml file.
      * @return a list of all products.
      * @see ProductDTO
      * @see ProductMapper
      */
-    @Cacheable(value = "products", key = "'getAllProducts'")
     public List<ProductDTO> getAllProducts(String fileName) {
-        List<Product> products = parseXmlFile(fileName);
-        return products.stream().map(productMapper).toList();
+        return getCatalog(fileName).getProducts();
     }
     
     /**
-     * Reads the XML file, parses it and returns a list of products that match the given name
-     * (assuming the name is not unique).
+     * Returns a list of products that match the given name (assuming the name is not unique).
+     * The lookup is answered by the {@link ProductIndex} of the shared catalog, so it is not cached separately.
+     * Most unknown names are rejected by its Bloom filter, which is cheaper than a miss in the dictionary's hash table.
      *
      * @param fileName the name of the xml file.
      * @param productName the name of the product to search for.
      * @return a list of products that match the given name.
      * @throws ResourceNotFoundException if no products are found with the given name.
      */
-    @Cacheable(value = "products", key = "#productName")
     public List<ProductDTO> getProductByName(String fileName, String productName) {
-        List<Product> products = parseXmlFile(fileName);
-        List<Product> foundProducts = products.stream()
-                .filter(product -> product.getName().equals(productName))
-                .toList();
+        List<ProductDTO> foundProducts = findByName(getCatalog(fileName).getIndex(), productName);
         
         if (foundProducts.isEmpty()) {
             throw new ResourceNotFoundException("Product not found with name: " + productName);
         }
         
-        return foundProducts.stream().map(productMapper).toList();
+        return foundProducts;
+    }
+    
+    /**
+     * Looks up many product names and ids at once, all against the same catalog version.
+     * Every key gets its own result, keys without products are marked as not found.
+     *
+     * @param fileName the name of the xml file.
+     * @param request the names and ids to look up, either list may be {@code null}.
+     * @return one result per name and id, in request order, names first.
+     * @throws InvalidParameterException if a key is {@code null} or there are more than {@value #MAX_BATCH_SIZE} keys.
+     * @see ProductIndex
+     */
+    public ProductBatchDTO findProducts(String fileName, ProductBatchRequestDTO request) {
+        List<String> names = Objects.requireNonNullElse(request.getNames(), List.of());
+        List<Long> ids = Objects.requireNonNullElse(request.getIds(), List.of());
+        if (names.size() + ids.size() > MAX_BATCH_SIZE) {
+            throw new InvalidParameterException(String.format("At most %d names and ids can be looked up at once, "
+                    + "were: %d", MAX_BATCH_SIZE, names.size() + ids.size()));
+        }
+        if (names.stream().anyMatch(Objects::isNull) || ids.stream().anyMatch(Objects::isNull)) {
+            throw new InvalidParameterException("Names and ids cannot be null");
+        }
+        
+        ProductIndex index = getCatalog(fileName).getIndex();
+        List<ProductBatchDTO.Result> results = new ArrayList<>(names.size() + ids.size());
+        for (String name : names) {
+            List<ProductDTO> products = findByName(index, name);
+            results.add(ProductBatchDTO.Result.builder()
+                    .name(name)
+                    .found(!products.isEmpty())
+                    .products(products)
+                    .build());
+        }
+        for (Long id : ids) {
+            List<ProductDTO> products = findById(index, id);
+            results.add(ProductBatchDTO.Result.builder()
+                    .id(id)
+                    .found(!products.isEmpty())
+                    .products(products)
+                    .build());
+        }
+        int found = (int) results.stream().filter(ProductBatchDTO.Result::isFound).count();
+        return ProductBatchDTO.builder()
+                .results(results)
+                .found(found)
+                .notFound(results.size() - found)
+                .build();
+    }
+
+    /**
+     * Looks up products by name, rejecting most unknown names with the Bloom filter of the index first.
+     */
+    private List<ProductDTO> findByName(ProductIndex index, String name) {
+        ProductIndex.Lookup lookup = index.lookUpName(name);
+        catalogMetrics.lookedUp(CatalogMetrics.KEY_NAME, lookup.passedFilter(), !lookup.products().isEmpty());
+        return lookup.products();
+    }
+
+    /**
+     * Looks up products by id, rejecting most unknown ids with the Bloom filter of the index first.
+     */
+    private List<ProductDTO> findById(ProductIndex index, Long id) {
+        ProductIndex.Lookup lookup = index.lookUpId(id);
+        catalogMetrics.lookedUp(CatalogMetrics.KEY_ID, lookup.passedFilter(), !lookup.products().isEmpty());
+        return lookup.products();
+    }
+    
+    /**
+     * Searches products by a free text query over name, part number, company name and category.
+     * Matching is case-insensitive and supports whole tokens, prefixes and partial (n-gram) matches,
+     * the results are ranked by relevance. The search index is built once per catalog version.
+     *
+     * @param fileName the name of the xml file.
+     * @param query the search query.
+     * @param limit maximal number of returned products.
+     * @return the matching products, best match first.
+     * @throws InvalidParameterException if the query is blank or the limit is out of range.
+     * @see com.genpt.api.index.SearchIndex
+     */
+    @Cacheable(value = CacheConfig.PRODUCT_SEARCH,
+            key = "#root.target.getCatalogVersion(#fileName) + ':' + #limit + ':' + #query.toLowerCase()")
+    public List<ProductDTO> searchProducts(String fileName, String query, int limit) {
+        if (query.isBlank()) {
+            throw new InvalidParameterException("Search query cannot be empty");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new InvalidParameterException(
+                    String.format("Limit has to be between 1 and %d, was: %d", MAX_SEARCH_LIMIT, limit));
+        }
+        return getCatalog(fileName).getSearchIndex().search(query, limit);
+    }
+    
+    /**
+     * Finds products by their part number. The pattern is split into {@code -} separated segments, a segment
+     * {@code *} matches any single segment and a segment ending with {@code *} matches segments with that prefix.
+     * The part number trie is built once per catalog version, so lookups are not cached.
+     *
+     * @param fileName the name of the xml file.
+     * @param pattern the part number pattern, e.g. {@code 2303-E1A-*-M} or {@code 2303-E1*}.
+     * @param prefix {@code true} to find all part numbers starting with the pattern,
+     *               {@code false} to find part numbers matching the whole pattern.
+     * @param limit maximal number of returned products.
+     * @return the first matching products sorted by part number, with the total number of matches.
+     * @throws InvalidParameterException if the pattern is blank or the limit is out of range.
+     * @see com.genpt.api.index.PartNumberTrie
+     */
+    public ProductPageDTO findByPartNumber(String fileName, String pattern, boolean prefix, int limit) {
+        if (pattern.isBlank()) {
+            throw new InvalidParameterException("Part number pattern cannot be empty");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidParameterException(
+                    String.format("Limit has to be between 1 and %d, was: %d", MAX_PAGE_SIZE, limit));
+        }
+        PartNumberTrie.Matches matches = getCatalog(fileName).getPartNumberTrie().find(pattern, prefix, limit);
+        return ProductPageDTO.builder()
+                .products(matches.products())
+                .size(matches.products().size())
+                .totalElements(matches.total())
+                .build();
+    }
+    
+    /**
+     * Returns a page of the products matching all predicates of a faceted query, in document order,
+     * with the number of matches per category and company name.
+     *
+     * @param fileName the name of the xml file.
+     * @param query the predicates.
+     * @param page number of the page (0-based).
+     * @param size number of products per page.
+     * @param facetLimit maximal number of values per facet, those with the most matches.
+     * @return the page of matching products and the facet counts.
+     * @throws InvalidParameterException if any of the parameters is out of range.
+     * @see FacetIndex
+     */
+    public ProductQueryDTO queryProducts(String fileName, FacetQuery query, int page, int size, int facetLimit) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new InvalidParameterException(
+                    String.format("Page size has to be between 1 and %d, was: %d", MAX_PAGE_SIZE, size));
+        }
+        if (page < 0) {
+            throw new InvalidParameterException("Page number cannot be negative, was: " + page);
+        }
+        if (facetLimit < 0 || facetLimit > MAX_FACET_LIMIT) {
+            throw new InvalidParameterException(
+                    String.format("Facet limit has to be between 0 and %d, was: %d", MAX_FACET_LIMIT, facetLimit));
+        }
+        if (query.minId() != null && query.maxId() != null && query.minId() > query.maxId()) {
+            throw new InvalidParameterException(
+                    String.format("Id range is empty, minId %d is larger than maxId %d", query.minId(), query.maxId()));
+        }
+        
+        FacetIndex.Selection selection = getCatalog(fileName).getFacetIndex().select(query, facetLimit);
+        int offset = (int) Math.min((long) page * size, selection.size());
+        return ProductQueryDTO.builder()
+                .products(selection.getProducts(offset, size))
+                .page(page)
+                .size(size)
+                .totalElements(selection.size())
+                .totalPages((selection.size() + size - 1) / size)
+                .facets(selection.getFacets())
+                .build();
     }
     
     /**
+     * Returns a single page of products, optionally projected to a subset of fields.
+     * <p>
+     * Pages can be addressed either by number ({@code page}, 0-based) or by an opaque {@code cursor}
+     * returned with the previous page. A cursor is bound to the catalog version it was issued for,
+     * so paging through the catalog never skips or repeats products because of a concurrent update.
+     *
      * @param fileName the name of the xml file.
-     * @return list of products in the file.
+     * @param page number of the page, ignored when a cursor is given.
+     * @param size number of products per page.
+     * @param cursor cursor returned with the previous page, or {@code null}.
+     * @param fields comma separated fields to return, or {@code null} for all fields.
+     * @return the page of products with a cursor to the next page, if there is one.
+     * @throws InvalidParameterException if any of the parameters is invalid or the cursor has expired.
      */
-    private List<Product> parseXmlFile(String fileName) {
+    public ProductPageDTO getProductsPage(String fileName, Integer page, int size, String cursor, String fields) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new InvalidParameterException(
+                    String.format("Page size has to be between 1 and %d, was: %d", MAX_PAGE_SIZE, size));
+        }
+        if (page != null && page < 0) {
+            throw new InvalidParameterException("Page number cannot be negative, was: " + page);
+        }
+        if (page != null && cursor != null) {
+            throw new InvalidParameterException("Only one of page and cursor can be given");
+        }
+        
+        ProductCatalog current = getCatalog(fileName);
+        int offset = 0;
+        if (cursor != null) {
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            if (pageCursor.version() != current.getVersion()) {
+                throw new InvalidParameterException("Cursor has expired, the products were updated in the meantime");
+            }
+            offset = pageCursor.offset();
+        }
+        else if (page != null) {
+            offset = (int) Math.min((long) page * size, current.size());
+        }
+        
+        List<ProductDTO> products = current.getProducts();
+        int from = Math.min(offset, products.size());
+        int to = Math.min(from + size, products.size());
+        List<ProductDTO> pageProducts = products.subList(from, to);
+        
+        List<?> content = pageProducts;
+        if (fields != null) {
+            ProductProjection projection = ProductProjection.parse(fields);
+            content = pageProducts.stream().map(projection::apply).toList();
+        }
+        
+        return ProductPageDTO.builder()
+                .products(content)
+                // the requested page, also if it is past the last one
+                .page(cursor == null ? (page != null ? page : 0) : null)
+                .size(size)
+                .totalElements(products.size())
+                .totalPages(cursor == null ? (products.size() + size - 1) / size : null)
+                .nextCursor(to < products.size() ? new PageCursor(current.getVersion(), to).encode() : null)
+                .build();
+    }
+    
+    /**
+     * Returns a lazy stream of the products of the current catalog, including changes that are not compacted into
+     * the XML file yet, so it has the same products as {@link #getAllProducts(String)}.
+     * Product DTOs are created from the columns one at a time while the stream is consumed, so streaming does not
+     * need memory for all of them.
+     *
+     * @param fileName the name of the xml file.
+     * @return stream of all products, in document order.
+     * @throws XmlParsingException if the file cannot be loaded.
+     */
+    public Stream<ProductDTO> streamProducts(String fileName) {
+        return getCatalog(fileName).getProducts().stream();
+    }
+    
+    /**
+     * Returns the products of the current catalog as a reactive stream that follows the demand of its subscriber.
+     * The catalog is taken when subscribing, and every product is created from its columns only when requested.
+     *
+     * @param fileName the name of the xml file.
+     * @return all products in document order.
+     * @throws XmlParsingException if the file cannot be loaded.
+     */
+    public Flux<ProductDTO> getProductFlux(String fileName) {
+        return Flux.defer(() -> Flux.fromIterable(getCatalog(fileName).getProducts()));
+    }
+    
+    /**
+     * Applies a batch of upserts and deletes to the current catalog, without reading the XML file again.
+     * <p>
+     * The batch is appended to the {@link CatalogChangeLog} first, then the next catalog version is built from
+     * the columns of the current one and published atomically, so readers see either all changes of a batch or
+     * none of them. Deletes are applied before upserts, an upsert replaces the product with the same id or adds it.
+     * The logged changes are written into the XML file by {@link #compactChanges(String)}.
+     *
+     * @param fileName the name of the xml file.
+     * @param changes the changes to apply.
+     * @return the new catalog.
+     * @throws InvalidParameterException if a product has no id or no name, or a value is not valid XML text.
+     * @throws XmlParsingException if the changes cannot be logged.
+     * @see ProductCatalog#withChanges
+     */
+    public ProductCatalog applyChanges(String fileName, ProductChangesDTO changes) {
+        ProductChangesDTO validChanges = validate(normalize(changes));
+        updateLock.lock();
         try {
-            File xmlFile = resourceLoader.getResource("classpath:"+ fileName).getFile();
-            XmlMapper xmlMapper = new XmlMapper();
-            TypeReference<List<Product>> productsTypeRef = new TypeReference<>() {};
-            return xmlMapper.readValue(xmlFile, productsTypeRef);
+            ProductCatalog current = getCatalog(fileName);
+            try {
+                catalogChangeLog.append(getXmlFile(fileName).toPath(), validChanges);
+            }
+            catch (IOException e) {
+                String errorMessage = "Error while logging changes of XML file: " + fileName;
+                log.error(errorMessage, e);
+                throw new XmlParsingException(errorMessage, e);
+            }
+            
+            ProductCatalog changed = withChanges(current, validChanges, Instant.now());
+            publish(changed);
+            log.info("Published catalog version {} with {} products ({} upserted, {} deleted)", changed.getVersion(),
+                    changed.size(), validChanges.getUpsert().size(), validChanges.getDelete().size());
+            return changed;
+        }
+        finally {
+            updateLock.unlock();
+        }
+    }
+    
+    /**
+     * Replaces the product with the given id, or adds it if there is none.
+     *
+     * @param fileName the name of the xml file.
+     * @param id id of the product, overrides the id of the given product.
+     * @param product the new product.
+     * @return the saved product.
+     * @throws InvalidParameterException if the product has no name, or a value is not valid XML text.
+     * @see #applyChanges(String, ProductChangesDTO)
+     */
+    public ProductDTO saveProduct(String fileName, Long id, ProductDTO product) {
+        product.setId(id);
+        applyChanges(fileName, ProductChangesDTO.builder().upsert(List.of(product)).delete(List.of()).build());
+        return product;
+    }
+    
+    /**
+     * Deletes all products with the given id.
+     *
+     * @param fileName the name of the xml file.
+     * @param id id of the products.
+     * @throws ResourceNotFoundException if there is no product with the given id.
+     * @see #applyChanges(String, ProductChangesDTO)
+     */
+    public void deleteProduct(String fileName, Long id) {
+        updateLock.lock();
+        try {
+            if (getCatalog(fileName).getIndex().findById(id).isEmpty()) {
+                throw new ResourceNotFoundException("Product not found with id: " + id);
+            }
+            applyChanges(fileName, ProductChangesDTO.builder().upsert(List.of()).delete(List.of(id)).build());
+        }
+        finally {
+            updateLock.unlock();
+        }
+    }
+    
+    /**
+     * Writes the current catalog into the XML file and deletes the change log, if changes were logged.
+     * The file is written to a temporary file and moved in place, and the change log is deleted only afterward.
+     * A crash in between replays changes that are already in the file, which gives the same products,
+     * because upserts and deletes are idempotent.
+     *
+     * @param fileName the name of the xml file.
+     * @throws XmlParsingException if the XML file cannot be written.
+     */
+    public void compactChanges(String fileName) {
+        updateLock.lock();
+        try {
+            Path path = getXmlFile(fileName).toPath();
+            if (!catalogChangeLog.exists(path)) {
+                return;
+            }
+            ProductCatalog current = getCatalog(fileName);
+            Path tempFile = null;
+            try {
+                tempFile = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+                MessageDigest digest = newContentDigest();
+                try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                    OutputStream outputStream = new DigestOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), digest);
+                    productXmlWriter.write(current.getProducts(), outputStream);
+                    outputStream.flush();
+                    channel.force(true);
+                }
+                
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                String contentHash = HexFormat.of().formatHex(digest.digest());
+                catalogSnapshotStore.write(path, current.getColumns(), contentHash);
+                catalogChangeLog.delete(path);
+                rememberXmlFile(path, contentHash, current, null);
+                log.info("Compacted changes of catalog version {} into {}", current.getVersion(), path);
+            }
+            catch (IOException e) {
+                String errorMessage = "Error while compacting changes into XML file: " + fileName;
+                log.error(errorMessage, e);
+                throw new XmlParsingException(errorMessage, e);
+            }
+            finally {
+                deleteQuietly(tempFile);
+            }
+        }
+        finally {
+            updateLock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the currently published catalog snapshot, loading it from the XML file on first access.
+     * The snapshot is replaced only as a whole, by {@link #updateFile(MultipartFile, String)}
+     * or {@link #applyChanges(String, ProductChangesDTO)}.
+     * <p>
+     * Concurrent requests on first access share a single load: one of them parses the file, the others wait for
+     * its result (or its exception). A failed load is not remembered, the next request tries again.
+     *
+     * @param fileName the name of the xml file.
+     * @return the current catalog.
+     * @throws XmlParsingException if an error occurs while parsing the XML file.
+     */
+    public ProductCatalog getCatalog(String fileName) {
+        ProductCatalog current = catalog.get();
+        if (current != null) {
+            return current;
+        }
+        
+        CompletableFuture<ProductCatalog> load = new CompletableFuture<>();
+        CompletableFuture<ProductCatalog> pending = pendingLoad.compareAndExchange(null, load);
+        if (pending != null) {
+            return awaitLoad(pending);
+        }
+        try {
+            // the previous load may have published the catalog just before this one started
+            current = catalog.get();
+            if (current == null) {
+                ProductCatalog loaded = loadCatalog(fileName);
+                log.info("Loaded catalog version {} with {} products from {}",
+                        loaded.getVersion(), loaded.size(), fileName);
+                
+                // an upload may have published a catalog in the meantime
+                if (catalog.compareAndSet(null, loaded)) {
+                    catalogMetrics.published(loaded);
+                    catalogEvents.published(loaded);
+                }
+                current = catalog.get();
+            }
+            load.complete(current);
+            return current;
+        }
+        catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            pendingLoad.set(null);
+        }
+    }
+    
+    private static ProductCatalog awaitLoad(CompletableFuture<ProductCatalog> load) {
+        try {
+            return load.join();
+        }
+        catch (CompletionException e) {
+            // rethrow the exception of the loading request, e.g. an XmlParsingException
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    private void publish(ProductCatalog published) {
+        catalog.set(published);
+        catalogMetrics.published(published);
+        catalogEvents.published(published);
+    }
+    
+    /**
+     * Returns the version of the current catalog. Used as a part of cache keys,
+     * so cached results of an older version are never returned after a reload.
+     *
+     * @param fileName the name of the xml file.
+     * @return version number of the current catalog.
+     */
+    public long getCatalogVersion(String fileName) {
+        return getCatalog(fileName).getVersion();
+    }
+    
+    /**
+     * Loads the XML file into a new catalog snapshot. The binary snapshot of the file is used if it was built
+     * from the current content, otherwise the file is parsed and a new binary snapshot is written.
+     * Changes logged since the file was last written are applied on top.
+     *
+     * @param fileName the name of the xml file.
+     * @return the catalog with all products in the file.
+     * @throws XmlParsingException if the file cannot be opened or parsed.
+     * @see CatalogSnapshotStore
+     * @see CatalogChangeLog
+     */
+    private ProductCatalog loadCatalog(String fileName) {
+        Path xmlFile = getXmlFile(fileName).toPath();
+        try {
+            return replayChanges(xmlFile, loadXmlFile(xmlFile));
         }
         catch (IOException e) {
             String errorMessage = "Error while reading XML file: " + fileName;
-            System.err.println(e.getMessage());
-            throw new RuntimeException(errorMessage, e);
+            log.error(errorMessage, e);
+            throw new XmlParsingException(errorMessage, e);
         }
     }
     
+    private ProductCatalog loadXmlFile(Path xmlFile) throws IOException {
+        Instant lastModified = Files.getLastModifiedTime(xmlFile).toInstant();
+        String contentHash = hashContent(xmlFile);
+        if (catalogSnapshotStore.exists(xmlFile)) {
+            Timer.Sample sample = catalogMetrics.startLoad();
+            Optional<ProductColumns> columns = catalogSnapshotStore.read(xmlFile, contentHash);
+            if (columns.isPresent()) {
+                ProductCatalog loaded = ProductCatalog.of(catalogVersions.incrementAndGet(), columns.get(),
+                        contentHash, lastModified);
+                catalogMetrics.loaded(sample, CatalogMetrics.SOURCE_SNAPSHOT, 0, 0);
+                rememberXmlFile(xmlFile, contentHash, loaded, null);
+                return loaded;
+            }
+        }
+        
+        ProductCatalog parsed = readCatalog(xmlFile, contentHash, lastModified);
+        catalogSnapshotStore.write(xmlFile, parsed.getColumns(), contentHash);
+        rememberXmlFile(xmlFile, contentHash, parsed, null);
+        return parsed;
+    }
     
-    // ----- extra -----
+    /**
+     * Reloads the XML file after it was changed outside the application, e.g. replaced by rsync or on a mounted
+     * volume. Nothing happens if the content is unchanged, e.g. after the file was written by this service.
+     * <p>
+     * If the current catalog holds exactly the products of the previous content, the reload is incremental:
+     * the file is split into content-defined chunks and only chunks that are not part of the previous content are
+     * parsed, the products of all other chunks are copied from the current catalog (see {@link ProductChunks}).
+     * Otherwise, or if a changed chunk cannot be parsed on its own, the whole file is parsed.
+     * The new file replaces all changes which were not yet compacted into the previous one.
+     *
+     * @param fileName the name of the xml file.
+     * @return {@code true} if a new catalog was published.
+     * @throws XmlParsingException if the file cannot be read or parsed, the current catalog is kept.
+     * @see CatalogFileWatcher
+     */
+    public boolean reloadFile(String fileName) {
+        updateLock.lock();
+        try {
+            ProductCatalog current = catalog.get();
+            XmlFileState previous = xmlFileState;
+            if (current == null || previous == null) {
+                // not loaded yet, the file is read on first access
+                return false;
+            }
+            Path xmlFile = getXmlFile(fileName).toPath();
+            try {
+                String contentHash = hashContent(xmlFile);
+                if (contentHash.equals(previous.contentHash())) {
+                    return false;
+                }
+                
+                Instant lastModified = Files.getLastModifiedTime(xmlFile).toInstant();
+                ProductChunks chunks = parallelProductXmlParser.scanChunks(xmlFile);
+                ProductCatalog reloaded = null;
+                // a file without products is parsed as a whole, so that it is still checked to be valid XML
+                if (chunks.size() > 0 && previous.chunks() != null
+                        && previous.catalogVersion() == current.getVersion()) {
+                    reloaded = readChanges(xmlFile, chunks, previous.chunks(), current, contentHash, lastModified);
+                }
+                if (reloaded == null) {
+                    reloaded = readCatalog(xmlFile, contentHash, lastModified);
+                }
+                
+                if (catalogChangeLog.exists(xmlFile)) {
+                    log.warn("Discarding changes not written to {}, the file was replaced", xmlFile);
+                    catalogChangeLog.delete(xmlFile);
+                }
+                catalogSnapshotStore.write(xmlFile, reloaded.getColumns(), contentHash);
+                publish(reloaded);
+                rememberXmlFile(xmlFile, contentHash, reloaded, chunks);
+                log.info("Reloaded catalog version {} with {} products from {}", reloaded.getVersion(),
+                        reloaded.size(), xmlFile);
+                return true;
+            }
+            catch (IOException e) {
+                String errorMessage = "Error while reloading XML file: " + fileName;
+                log.error(errorMessage, e);
+                throw new XmlParsingException(errorMessage, e);
+            }
+        }
+        finally {
+            updateLock.unlock();
+        }
+    }
+    
+    /**
+     * Reads a new version of the XML file, parsing only the chunks that changed since the current catalog was read.
+     *
+     * @return the new catalog, or {@code null} if the whole file has to be parsed.
+     */
+    private ProductCatalog readChanges(Path xmlFile, ProductChunks chunks, ProductChunks previousChunks,
+                                       ProductCatalog current, String contentHash, Instant lastModified)
+            throws IOException {
+        ProductColumns.Splicer columns = current.getColumns().splicer();
+        Timer.Sample sample = catalogMetrics.startLoad();
+        long parsed;
+        try {
+            parsed = parallelProductXmlParser.parseChanges(xmlFile, chunks, previousChunks,
+                    new ParallelProductXmlParser.ChunkConsumer() {
+                        @Override
+                        public void unchanged(int from, int to) {
+                            columns.copy(from, to);
+                        }
+                        
+                        @Override
+                        public void changed(Product product) {
+                            columns.add(productMapper.apply(product));
+                        }
+                    });
+        }
+        catch (XmlParsingException e) {
+            catalogMetrics.failed(sample, CatalogMetrics.SOURCE_INCREMENTAL);
+            log.info("Could not reload {} incrementally, parsing the whole file", xmlFile, e);
+            return null;
+        }
+        log.info("Parsed {} of {} products of {}, the others are unchanged", parsed, chunks.productCount(), xmlFile);
+        ProductCatalog reloaded = ProductCatalog.of(catalogVersions.incrementAndGet(), columns.build(), contentHash,
+                lastModified);
+        catalogMetrics.loaded(sample, CatalogMetrics.SOURCE_INCREMENTAL, Files.size(xmlFile), parsed);
+        return reloaded;
+    }
+    
+    /**
+     * Remembers the content of the XML file the given catalog was read from or written to,
+     * with its chunks if they match the products of the catalog.
+     *
+     * @param chunks chunks of the file, or {@code null} to split the file now.
+     */
+    private void rememberXmlFile(Path xmlFile, String contentHash, ProductCatalog fileCatalog, ProductChunks chunks) {
+        long size = -1;
+        FileTime lastModified = null;
+        ProductChunks fileChunks = null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(xmlFile, BasicFileAttributes.class);
+            size = attributes.size();
+            lastModified = attributes.lastModifiedTime();
+            fileChunks = chunks != null ? chunks : parallelProductXmlParser.scanChunks(xmlFile);
+            if (fileChunks.productCount() != fileCatalog.size()) {
+                // e.g. a <Product tag in a comment, positions of the chunks cannot be trusted
+                fileChunks = null;
+            }
+        }
+        catch (IOException e) {
+            log.warn("Could not split {} into chunks, it will be reloaded as a whole", xmlFile, e);
+            fileChunks = null;
+        }
+        xmlFileState = new XmlFileState(contentHash, fileCatalog.getVersion(), fileChunks, size, lastModified);
+    }
+    
+    private ProductCatalog replayChanges(Path xmlFile, ProductCatalog loaded) throws IOException {
+        List<ProductChangesDTO> changes = catalogChangeLog.read(xmlFile);
+        ProductCatalog replayed = loaded;
+        for (ProductChangesDTO batch : changes) {
+            replayed = withChanges(replayed, normalize(batch), loaded.getLastModified());
+        }
+        if (!changes.isEmpty()) {
+            log.info("Replayed {} batches of changes on {}", changes.size(), xmlFile);
+        }
+        return replayed;
+    }
+    
+    /**
+     * Applies the changes to the given catalog as a new version. The hash of the new version is derived from
+     * the hash of the given one and the changes, so replaying the same changes gives the same entity tag.
+     */
+    private ProductCatalog withChanges(ProductCatalog current, ProductChangesDTO changes, Instant lastModified) {
+        MessageDigest digest = newContentDigest();
+        digest.update(current.getContentHash().getBytes(StandardCharsets.UTF_8));
+        digest.update(changes.toString().getBytes(StandardCharsets.UTF_8));
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        Timer.Sample sample = catalogMetrics.startLoad();
+        ProductCatalog changed = current.withChanges(catalogVersions.incrementAndGet(), changes, contentHash,
+                lastModified);
+        catalogMetrics.loaded(sample, CatalogMetrics.SOURCE_CHANGES, 0, changes.getUpsert().size());
+        return changed;
+    }
+    
+    private static ProductChangesDTO validate(ProductChangesDTO changes) {
+        for (ProductDTO product : changes.getUpsert()) {
+            if (product == null || product.getId() == null) {
+                throw new InvalidParameterException("Every upserted product needs an id");
+            }
+            if (product.getName() == null || product.getName().isBlank()) {
+                throw new InvalidParameterException("Product " + product.getId() + " needs a name");
+            }
+            // the changes are compacted into the XML file, which has to stay readable
+            if (Stream.of(product.getName(), product.getCategory(), product.getPartNumberNR(), product.getCompanyName())
+                    .anyMatch(value -> value != null && !ProductXmlWriter.isXmlText(value))) {
+                throw new InvalidParameterException(
+                        "Product " + product.getId() + " contains characters that are not allowed in XML");
+            }
+        }
+        if (changes.getDelete().stream().anyMatch(Objects::isNull)) {
+            throw new InvalidParameterException("Deleted ids cannot be null");
+        }
+        return changes;
+    }
+    
+    /**
+     * @return the changes with empty lists instead of missing ones.
+     */
+    private static ProductChangesDTO normalize(ProductChangesDTO changes) {
+        return ProductChangesDTO.builder()
+                .upsert(changes.getUpsert() == null ? List.of() : changes.getUpsert())
+                .delete(changes.getDelete() == null ? List.of() : changes.getDelete())
+                .build();
+    }
     
     /**
-     * Returns the content of the XML file as a string.
+     * Parses the given XML file into a new catalog snapshot, using all cores for large files.
      *
-     * @return the content of the XML file.
-     * @throws EmptyResourceException if the XML file was not yet parsed or is empty.
+     * @param xmlFile the XML file.
+     * @param contentHash hex encoded SHA-256 hash of the content.
+     * @param lastModified modification time of the content.
+     * @return the catalog with all products.
+     * @throws XmlParsingException if the content cannot be parsed.
+     * @see ParallelProductXmlParser
      */
-    public String getXmlFileContent(String fileName) {
-        return new String(extractFileBytes(fileName));
+    private ProductCatalog readCatalog(Path xmlFile, String contentHash, Instant lastModified) throws IOException {
+        Timer.Sample sample = catalogMetrics.startLoad();
+        try {
+            ProductColumns.Builder columns = ProductColumns.builder();
+            parallelProductXmlParser.parse(xmlFile, product -> columns.add(productMapper.apply(product)));
+            ProductCatalog parsed = ProductCatalog.of(catalogVersions.incrementAndGet(), columns.build(),
+                    contentHash, lastModified);
+            catalogMetrics.loaded(sample, CatalogMetrics.SOURCE_XML, Files.size(xmlFile), parsed.size());
+            return parsed;
+        }
+        catch (IOException | RuntimeException e) {
+            catalogMetrics.failed(sample, CatalogMetrics.SOURCE_XML);
+            throw e;
+        }
     }
     
+    private static String hashContent(Path file) throws IOException {
+        MessageDigest digest = newContentDigest();
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
     
     /**
-     * Extracts the bytes from the XML file using {@link ResourceLoader}.
+     * Returns the path of the XML file, e.g. to watch it for changes.
      *
-     * @return XML content as a {@code byte[]}.
-     * @throws RuntimeException if an error occurs while reading the XML file bytes.
+     * @param fileName the name of the xml file.
+     * @return the path of the XML file.
+     * @throws XmlParsingException if the XML file cannot be resolved.
+     * @see #getXmlFile(String)
      */
-    private byte[] extractFileBytes(String filename) {
-        try (InputStream inputStream = resourceLoader.getResource("classpath:" + filename).getInputStream();
-             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                byteArrayOutputStream.write(buffer, 0, bytesRead);
+    public Path getXmlFilePath(String fileName) {
+        return getXmlFile(fileName).toPath();
+    }
+    
+    /**
+     * Resolves the XML file. The name is a path on the file system (e.g. on a mounted volume) if it starts with
+     * {@code file:}, is absolute or names an existing file relative to the working directory. Otherwise the file is
+     * looked up on the classpath, which only works as long as the classpath is a directory and not a packaged jar.
+     */
+    private File getXmlFile(String fileName) {
+        Path externalFile = getExternalPath(fileName);
+        if (externalFile != null) {
+            return externalFile.toFile();
+        }
+        String location = fileName != null && fileName.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)
+                ? fileName : ResourceUtils.CLASSPATH_URL_PREFIX + fileName;
+        try {
+            return resourceLoader.getResource(location).getFile();
+        }
+        catch (IOException e) {
+            String errorMessage = "Error while reading XML file: " + fileName
+                    + " (set files.xml.products to a path on the file system when running from a jar)";
+            log.error(errorMessage, e);
+            throw new XmlParsingException(errorMessage, e);
+        }
+    }
+    
+    private static Path getExternalPath(String fileName) {
+        if (fileName == null || fileName.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)) {
+            return null;
+        }
+        if (fileName.startsWith(ResourceUtils.FILE_URL_PREFIX)) {
+            return Path.of(fileName.substring(ResourceUtils.FILE_URL_PREFIX.length()));
+        }
+        Path path = Path.of(fileName);
+        return path.isAbsolute() || Files.isRegularFile(path) ? path : null;
+    }
+    
+    // ----- extra -----
+    
+    /**
+     * Returns the XML file as a resource, so it can be streamed to the client without loading it into memory.
+     *
+     * @return the XML file resource.
+     * @throws XmlParsingException if the XML file cannot be resolved.
+     */
+    public Resource getXmlFileResource(String fileName) {
+        return new FileSystemResource(getXmlFile(fileName));
+    }
+    
+    /**
+     * Returns the entity tag of the content of the XML file, which differs from the one of the catalog
+     * while changes are not compacted into the file.
+     *
+     * @param fileName the name of the xml file.
+     * @return strong entity tag derived from the content hash of the file, or {@code null} if the file was changed
+     *         since it was last read or written by this service and its hash is not known yet.
+     * @throws XmlParsingException if the file cannot be loaded.
+     */
+    public String getXmlFileETag(String fileName) {
+        // the content of the file is known once the catalog is loaded
+        getCatalog(fileName);
+        XmlFileState state = xmlFileState;
+        if (state == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(getXmlFile(fileName).toPath(),
+                    BasicFileAttributes.class);
+            if (attributes.size() != state.size() || !attributes.lastModifiedTime().equals(state.lastModified())) {
+                return null;
             }
-            return byteArrayOutputStream.toByteArray();
         }
         catch (IOException e) {
-            String errorMessage = "Error while reading XML file bytes";
-            throw new RuntimeException(errorMessage, e);
+            return null;
         }
+        return "\"" + state.contentHash() + "\"";
     }
     
     
     /**
      * Replaces content of the XML uloadedFile being with the new uloadedFile passed as an argument.
-     * Additionally, clears the product cache.
+     * <p>
+     * The upload is streamed in a single pass through a validating parser into a new catalog snapshot and,
+     * at the same time, into a temporary file next to the original, so it is never held in memory as a whole.
+     * An invalid file never replaces the original or reaches the readers.
+     * The temporary file is forced to disk and then moved over the original, and finally the new snapshot is published atomically.
+     * Readers see either the complete old version or the complete new one, and keep being served from the old one
+     * while the upload is parsed. The upload replaces all products, including changes applied while it was parsed;
+     * its version is assigned when it is published, so versions stay ascending in publication order.
+     * Additionally, clears the search cache.
      *
      * @param uploadedFile the new XML uloadedFile to replace the existing one.
      * @throws EmptyResourceException      if the given uloadedFile is empty.
      * @throws InvalidParameterException   if the given uloadedFile is not of type XML.
+     * @throws InvalidXmlFileException     if the uploaded file is malformed or contains invalid products.
      * @throws XmlParsingException         if an error occurs while updating the XML uloadedFile.
+     * @see ProductXmlParser#parseAndValidate(InputStream, java.util.function.Consumer)
      */
-    @CacheEvict(value = "products", allEntries = true)
+    @CacheEvict(value = CacheConfig.PRODUCT_SEARCH, allEntries = true)
     public void updateFile(MultipartFile uploadedFile, String originalFileName) {
         if (uploadedFile.isEmpty()) {
             throw new EmptyResourceException("File is empty");
@@ -169,14 +1040,102 @@ public class ProductService {
             );
         }
         
+        Path tempFile = null;
         try {
-            Path path = resourceLoader.getResource("classpath:" + originalFileName).getFile().toPath();
-//            System.out.println(path);
-            Files.write(path, uploadedFile.getBytes(), StandardOpenOption.TRUNCATE_EXISTING);
+            Path path = getXmlFile(originalFileName).toPath();
+            tempFile = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            ProductCatalog previous = catalog.get();
+            Upload upload = readUpload(uploadedFile, tempFile);
+            
+            ProductCatalog newCatalog;
+            updateLock.lock();
+            try {
+                if (previous != null && catalog.get() != previous) {
+                    log.warn("Catalog version {} was published while the upload was parsed, the upload replaces it",
+                            catalog.get().getVersion());
+                }
+                newCatalog = ProductCatalog.of(catalogVersions.incrementAndGet(), upload.columns(),
+                        upload.contentHash(), Instant.now());
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // the upload replaces all logged changes
+                catalogChangeLog.delete(path);
+                catalogSnapshotStore.write(path, newCatalog.getColumns(), newCatalog.getContentHash());
+                
+                publish(newCatalog);
+                rememberXmlFile(path, newCatalog.getContentHash(), newCatalog, null);
+            }
+            finally {
+                updateLock.unlock();
+            }
+            log.info("Published catalog version {} with {} products", newCatalog.getVersion(), newCatalog.size());
         }
         catch (IOException e) {
             String errorMessage = "Error while updating XML uloadedFile";
             throw new XmlParsingException(errorMessage, e);
         }
+        finally {
+            deleteQuietly(tempFile);
+        }
+    }
+    
+    /**
+     * Parses and validates the uploaded content into the columns of a new catalog snapshot while copying it to the
+     * target file and computing its hash, all in one pass over the upload. The copy is forced to disk.
+     */
+    private Upload readUpload(MultipartFile uploadedFile, Path target) throws IOException {
+        MessageDigest digest = newContentDigest();
+        ProductColumns.Builder columns = ProductColumns.builder();
+        Timer.Sample sample = catalogMetrics.startLoad();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE);
+             InputStream upload = new DigestInputStream(uploadedFile.getInputStream(), digest);
+             OutputStream copy = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+             InputStream inputStream = new BufferedInputStream(new TeeInputStream(upload, copy), 1 << 16)) {
+            productXmlParser.parseAndValidate(inputStream, product -> columns.add(productMapper.apply(product)));
+            // content after the root element is copied and hashed as well
+            inputStream.transferTo(OutputStream.nullOutputStream());
+            // on disk before it is moved over the original, which a crash must not leave truncated
+            copy.flush();
+            channel.force(true);
+        }
+        catch (XmlParsingException e) {
+            catalogMetrics.failed(sample, CatalogMetrics.SOURCE_UPLOAD);
+            throw new InvalidXmlFileException("Invalid XML file: " + e.getMessage(), e);
+        }
+        catch (IOException e) {
+            catalogMetrics.failed(sample, CatalogMetrics.SOURCE_UPLOAD);
+            throw e;
+        }
+        
+        Upload upload = new Upload(columns.build(), HexFormat.of().formatHex(digest.digest()));
+        catalogMetrics.loaded(sample, CatalogMetrics.SOURCE_UPLOAD, uploadedFile.getSize(), upload.columns().size());
+        return upload;
+    }
+    
+    /**
+     * Products and content hash of a validated upload, published as a catalog version by
+     * {@link #updateFile(MultipartFile, String)}.
+     */
+    private record Upload(ProductColumns columns, String contentHash) {
+    }
+    
+    /**
+     * Content of the XML file: its hash, the version of the catalog holding exactly its products,
+     * its chunks if their product positions match that catalog, and the size and modification time of the file
+     * with that content.
+     */
+    private record XmlFileState(String contentHash, long catalogVersion, ProductChunks chunks,
+                                long size, FileTime lastModified) {
+    }
+    
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            log.warn("Could not delete temporary file {}", path, e);
+        }
     }
 }
@@ -0,0 +1,49 @@
+package com.genpt.api.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe, lazily computed value. The supplier is called at most once, on the first {@link #get()}.
+ * Callers waiting for the value block on a {@link ReentrantLock}, which unlike a monitor also releases the carrier
+ * of a virtual thread.
+ *
+ * @param <T> type of the value
+ * @see com.genpt.api.catalog.ProductCatalog
+ */
+public final class Lazy<T> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Supplier<T> supplier;
+    private volatile T value;
+
+    private Lazy(Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    public static <T> Lazy<T> of(Supplier<T> supplier) {
+        return new Lazy<>(supplier);
+    }
+
+    /**
+     * @return the value, computed on the first call.
+     */
+    public T get() {
+        T result = value;
+        if (result == null) {
+            lock.lock();
+            try {
+                result = value;
+                if (result == null) {
+                    result = supplier.get();
+                    value = result;
+                    supplier = null; // not needed anymore, may hold on to large objects
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        return result;
+    }
+}
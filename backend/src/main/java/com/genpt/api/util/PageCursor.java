@@ -0,0 +1,47 @@
+package com.genpt.api.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
+import java.util.Base64;
+
+/**
+ * Opaque cursor pointing at a position in a given catalog version.
+ * Clients receive it encoded as a URL-safe string and pass it back unchanged to fetch the next page.
+ *
+ * @param version version of the catalog the cursor was issued for.
+ * @param offset position of the first product of the next page.
+ * @see com.genpt.api.service.ProductService#getProductsPage
+ */
+public record PageCursor(long version, int offset) {
+
+    /**
+     * @return the cursor encoded as an opaque, URL-safe string.
+     */
+    public String encode() {
+        byte[] bytes = (version + ":" + offset).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes a cursor previously created by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor.
+     * @return the decoded cursor.
+     * @throws InvalidParameterException if the cursor is malformed.
+     */
+    public static PageCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            long version = Long.parseLong(decoded.substring(0, separator));
+            int offset = Integer.parseInt(decoded.substring(separator + 1));
+            if (offset < 0) {
+                throw new IllegalArgumentException("Negative offset");
+            }
+            return new PageCursor(version, offset);
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidParameterException("Invalid cursor: '" + cursor + "'");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.genpt.api.util;
+
+import com.genpt.api.dto.ProductDTO;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Projection of {@link ProductDTO} to a subset of its fields, e.g. {@code fields=id,name}.
+ * Projected products keep the order of the requested fields.
+ *
+ * @see com.genpt.api.service.ProductService#getProductsPage
+ */
+public final class ProductProjection {
+
+    /** Accessors of the selectable fields, in the order they are declared in {@link ProductDTO}. */
+    private static final Map<String, Function<ProductDTO, Object>> FIELDS = new LinkedHashMap<>();
+    static {
+        FIELDS.put("id", ProductDTO::getId);
+        FIELDS.put("name", ProductDTO::getName);
+        FIELDS.put("category", ProductDTO::getCategory);
+        FIELDS.put("partNumberNR", ProductDTO::getPartNumberNR);
+        FIELDS.put("companyName", ProductDTO::getCompanyName);
+        FIELDS.put("active", ProductDTO::isActive);
+    }
+
+    private final List<String> fields;
+
+    private ProductProjection(List<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Parses a comma separated list of field names.
+     *
+     * @param fields field names, e.g. {@code "id,name"}.
+     * @return the projection.
+     * @throws InvalidParameterException if a field name is unknown or no field is given.
+     */
+    public static ProductProjection parse(String fields) {
+        List<String> fieldNames = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .distinct()
+                .toList();
+
+        if (fieldNames.isEmpty()) {
+            throw new InvalidParameterException("At least one field has to be selected");
+        }
+        for (String field : fieldNames) {
+            if (!FIELDS.containsKey(field)) {
+                throw new InvalidParameterException(
+                        String.format("Unknown field: '%s', available fields are %s", field, FIELDS.keySet()));
+            }
+        }
+        return new ProductProjection(fieldNames);
+    }
+
+    /**
+     * @param product the product to project.
+     * @return map with the selected fields of the product, in the requested order.
+     */
+    public Map<String, Object> apply(ProductDTO product) {
+        Map<String, Object> projected = new LinkedHashMap<>(fields.size() * 2);
+        for (String field : fields) {
+            projected.put(field, FIELDS.get(field).apply(product));
+        }
+        return projected;
+    }
+}
@@ -0,0 +1,174 @@
+package com.genpt.api.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.metrics.CatalogMetrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Writes the list of all products as an {@link ApiResponse} JSON without serializing the products per request,
+ * and streams products as newline delimited JSON.
+ * <p>
+ * The product array is serialized once per catalog version and kept as a byte array. For every request
+ * only the envelope is produced (the {@code timeStamp} changes with every response) and the cached
+ * bytes are written between its head and tail, so the output is identical to serializing
+ * {@code ApiResponse} with {@code data = {"products": [...]}}.
+ *
+ * @see ApiResponse
+ * @see com.genpt.api.controller.ProductController
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductsJsonWriter {
+
+    private static final byte[] RESPONSE_TAIL = "}}".getBytes(StandardCharsets.UTF_8);
+
+    /** ObjectMapper configured by Spring, so dates and DTOs are written the same way as elsewhere in the api. */
+    private final ObjectMapper objectMapper;
+
+    /** Meters of the serialization per catalog version. */
+    private final CatalogMetrics catalogMetrics;
+
+    /** Products of the last requested catalog version serialized as a JSON array. */
+    private volatile SerializedProducts serializedProducts;
+
+    /** Held while a catalog version is serialized, requests of that version wait for it. */
+    private final ReentrantLock serializationLock = new ReentrantLock();
+
+
+    /**
+     * Writes the response with all products of the given catalog.
+     *
+     * @param catalog the catalog to write.
+     * @param message message of the response.
+     * @param response the response to write to.
+     * @throws IOException if writing to the response fails.
+     */
+    public void write(ProductCatalog catalog, String message, HttpServletResponse response) throws IOException {
+        write(catalog, message, LocalDateTime.now(), response);
+    }
+
+    /**
+     * Writes the response with all products of the given catalog and the given time stamp.
+     *
+     * @param catalog the catalog to write.
+     * @param message message of the response.
+     * @param timeStamp time stamp of the response.
+     * @param response the response to write to.
+     * @throws IOException if writing to the response fails.
+     */
+    public void write(ProductCatalog catalog, String message, LocalDateTime timeStamp, HttpServletResponse response)
+            throws IOException {
+        byte[] products = getProductsJson(catalog);
+        byte[] head = responseHead(message, timeStamp);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLengthLong((long) head.length + products.length + RESPONSE_TAIL.length);
+
+        OutputStream outputStream = response.getOutputStream();
+        outputStream.write(head);
+        outputStream.write(products);
+        outputStream.write(RESPONSE_TAIL);
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the given products as newline delimited JSON, one product per line.
+     * Products are serialized one at a time as the stream is consumed. They are collected in the buffer of the
+     * generator, which is written to the stream whenever it is full, and the stream is flushed once at the end
+     * (but not closed), so a product costs no write of its own.
+     *
+     * @param products the products to write.
+     * @param outputStream the stream to write to.
+     * @throws IOException if writing to the stream fails.
+     */
+    public void writeLines(Stream<ProductDTO> products, OutputStream outputStream) throws IOException {
+        // flushing after every value is the default of the ObjectMapper
+        ObjectWriter writer = objectMapper.writerFor(ProductDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            Iterator<ProductDTO> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+            }
+            // closing the generator flushes the stream
+        }
+    }
+
+    /**
+     * Returns the products of the given catalog serialized as a JSON array,
+     * serializing them only if this catalog version was not serialized yet.
+     *
+     * @param catalog the catalog.
+     * @return JSON array with all products.
+     */
+    public byte[] getProductsJson(ProductCatalog catalog) {
+        SerializedProducts current = serializedProducts;
+        if (current != null && current.version() == catalog.getVersion()) {
+            return current.json();
+        }
+
+        serializationLock.lock();
+        try {
+            current = serializedProducts;
+            if (current == null || current.version() != catalog.getVersion()) {
+                current = new SerializedProducts(catalog.getVersion(), serialize(catalog));
+                serializedProducts = current;
+            }
+            return current.json();
+        }
+        finally {
+            serializationLock.unlock();
+        }
+    }
+
+    /**
+     * Envelope fields of {@link ApiResponse} preceding {@code data}, in declaration order.
+     */
+    private byte[] responseHead(String message, LocalDateTime timeStamp) throws JsonProcessingException {
+        // a null message is left out, like the other default values of ApiResponse
+        String head = "{\"timeStamp\":" + objectMapper.writeValueAsString(timeStamp)
+                + ",\"status\":" + HttpStatus.OK.value()
+                + (message != null ? ",\"message\":" + objectMapper.writeValueAsString(message) : "")
+                + ",\"data\":{\"products\":";
+        return head.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] serialize(ProductCatalog catalog) {
+        try {
+            Timer.Sample sample = catalogMetrics.startSerialization();
+            byte[] json = objectMapper.writeValueAsBytes(catalog.getProducts());
+            catalogMetrics.serialized(sample, json.length);
+            return json;
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error while serializing products", e);
+        }
+    }
+
+    private record SerializedProducts(long version, byte[] json) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.genpt.api.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Input stream copying every byte read from it to an output stream, so content can be processed
+ * and stored in a single pass. Neither stream is closed by this stream.
+ *
+ * @see com.genpt.api.service.ProductService#updateFile
+ */
+public class TeeInputStream extends FilterInputStream {
+
+    private final OutputStream copy;
+
+    public TeeInputStream(InputStream inputStream, OutputStream copy) {
+        super(inputStream);
+        this.copy = copy;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            copy.write(value);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        int count = super.read(bytes, offset, length);
+        if (count > 0) {
+            copy.write(bytes, offset, count);
+        }
+        return count;
+    }
+
+    /**
+     * Skipped bytes are read, so that they are copied as well.
+     */
+    @Override
+    public long skip(long count) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(count, 8192)];
+        long skipped = 0;
+        while (skipped < count) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // the streams are owned by the caller
+    }
+}
@@ -0,0 +1,64 @@
+package com.genpt.api;
+
+import com.genpt.api.config.CacheConfig;
+import com.genpt.api.config.CacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheConfigTest {
+	
+	@Test
+	void testRegionsUseConfiguredSpecs() {
+		CacheProperties cacheProperties = new CacheProperties();
+		cacheProperties.setRegions(Map.of(
+				"small", "maximumSize=2,expireAfterWrite=1m",
+				"large", "maximumSize=10000,expireAfterWrite=10m"));
+		CacheManager cacheManager = new CacheConfig().cacheManager(cacheProperties);
+		((SimpleCacheManager) cacheManager).initializeCaches();
+		
+		Cache<Object, Object> small = nativeCache(cacheManager, "small");
+		assertEquals(2, small.policy().eviction().orElseThrow().getMaximum());
+		assertEquals(Duration.ofMinutes(1), small.policy().expireAfterWrite().orElseThrow().getExpiresAfter());
+		assertEquals(10000, nativeCache(cacheManager, "large").policy().eviction().orElseThrow().getMaximum());
+		assertNull(cacheManager.getCache("unknown"));
+	}
+	
+	@Test
+	void testRegionsRecordStatistics() {
+		CacheProperties cacheProperties = new CacheProperties();
+		cacheProperties.setRegions(Map.of("small", "maximumSize=2"));
+		CacheManager cacheManager = new CacheConfig().cacheManager(cacheProperties);
+		((SimpleCacheManager) cacheManager).initializeCaches();
+		org.springframework.cache.Cache cache = cacheManager.getCache("small");
+		
+		cache.get("a");
+		cache.put("a", 1);
+		cache.get("a");
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+		Cache<Object, Object> nativeCache = nativeCache(cacheManager, "small");
+		nativeCache.cleanUp();
+		
+		CacheStats stats = nativeCache.stats();
+		assertEquals(1, stats.hitCount());
+		assertEquals(1, stats.missCount());
+		assertTrue(stats.evictionCount() > 0);
+		assertTrue(nativeCache.estimatedSize() <= 2);
+	}
+	
+	private static Cache<Object, Object> nativeCache(CacheManager cacheManager, String name) {
+		return ((CaffeineCache) cacheManager.getCache(name)).getNativeCache();
+	}
+}
@@ -0,0 +1,169 @@
+package com.genpt.api;
+
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.dto.CatalogEventDTO;
+import com.genpt.api.service.CatalogEvents;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class CatalogEventsTest {
+	private static final ProductCatalog CURRENT = catalog(1);
+	private static final ProductCatalog PUBLISHED = catalog(2);
+
+	private final CatalogEvents events = new CatalogEvents(Duration.ofMinutes(1));
+
+	@Test
+	void testSubscribeSendsCurrentVersion() {
+		ServerSentEvent<CatalogEventDTO> event = events.subscribe(CURRENT).blockFirst(Duration.ofSeconds(10));
+
+		assertEquals(CatalogEvents.CATALOG, event.event());
+		assertEquals("1", event.id());
+		assertEquals(CURRENT.getETag(), event.data().getEtag());
+	}
+
+	@Test
+	void testPublishedIsSentToAllSubscribers() {
+		List<Long> first = new CopyOnWriteArrayList<>();
+		List<Long> second = new CopyOnWriteArrayList<>();
+		events.subscribe(CURRENT).subscribe(event -> first.add(event.data().getVersion()));
+		events.subscribe(CURRENT).subscribe(event -> second.add(event.data().getVersion()));
+
+		events.published(PUBLISHED);
+
+		assertEquals(List.of(1L, 2L), first);
+		assertEquals(List.of(1L, 2L), second);
+		assertEquals(2, events.subscriberCount());
+	}
+
+	@Test
+	void testFailingSubscriberIsDropped() {
+		List<Long> received = new CopyOnWriteArrayList<>();
+		events.subscribe(CURRENT).subscribe(event -> received.add(event.data().getVersion()));
+		events.subscribe(CURRENT).subscribe(event -> {
+			if (event.data().getVersion() > 1) {
+				throw new IllegalStateException("client went away");
+			}
+		}, error -> { });
+		assertEquals(2, events.subscriberCount());
+
+		events.published(PUBLISHED);
+		events.published(catalog(3));
+
+		assertEquals(1, events.subscriberCount());
+		assertEquals(List.of(1L, 2L, 3L), received);
+	}
+
+	@Test
+	void testSlowSubscriberGetsLatestVersion() {
+		Demanding slow = new Demanding();
+		events.subscribe(CURRENT).subscribe(slow);
+		assertEquals(List.of(1L), slow.received);
+
+		// publishing does not wait for the subscriber, which skips to the latest version
+		for (int version = 2; version <= 100; version++) {
+			events.published(catalog(version));
+		}
+		slow.request(Long.MAX_VALUE);
+
+		assertEquals(List.of(1L, 100L), slow.received);
+	}
+
+	@Test
+	void testVersionsNeverGoBack() {
+		events.published(PUBLISHED);
+		List<Long> received = new CopyOnWriteArrayList<>();
+
+		// a subscriber of a newer catalog than the last published one, which is replayed to it
+		events.subscribe(catalog(3)).subscribe(event -> received.add(event.data().getVersion()));
+		events.published(PUBLISHED);
+		events.published(catalog(4));
+
+		assertEquals(List.of(3L, 4L), received);
+	}
+
+	@Test
+	void testSentAsServerSentEvents() throws Exception {
+		// JSON only, as ordered by Spring Boot; the defaults of a standalone setup would put XML first
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new EventsController(events))
+				.setMessageConverters(new MappingJackson2HttpMessageConverter())
+				.build();
+		MvcResult result = mockMvc.perform(get("/events"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		awaitContent(result, "id:1\n");
+
+		events.published(PUBLISHED);
+
+		String sent = awaitContent(result, "id:2\n");
+		assertTrue(sent.contains("event:" + CatalogEvents.CATALOG + "\n"), sent);
+		assertTrue(sent.contains("\"products\":0"), sent);
+	}
+
+	private static ProductCatalog catalog(long version) {
+		return ProductCatalog.of(version, List.of(), "version-" + version, Instant.EPOCH);
+	}
+
+	/**
+	 * Waits until events are written on the task executor of Spring MVC.
+	 */
+	private static String awaitContent(MvcResult result, String expected) throws Exception {
+		for (int i = 0; i < 100; i++) {
+			String content = result.getResponse().getContentAsString();
+			if (content.contains(expected)) {
+				return content;
+			}
+			Thread.sleep(50);
+		}
+		throw new AssertionError("Not sent: " + expected + ", was: " + result.getResponse().getContentAsString());
+	}
+
+	/**
+	 * Requests one event on subscribing, and further ones only when asked to.
+	 */
+	private static class Demanding extends BaseSubscriber<ServerSentEvent<CatalogEventDTO>> {
+		private final List<Long> received = new CopyOnWriteArrayList<>();
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			request(1);
+		}
+
+		@Override
+		protected void hookOnNext(ServerSentEvent<CatalogEventDTO> event) {
+			received.add(event.data().getVersion());
+		}
+	}
+
+	@RestController
+	static class EventsController {
+		private final CatalogEvents events;
+
+		EventsController(CatalogEvents events) {
+			this.events = events;
+		}
+
+		@GetMapping("/events")
+		Flux<ServerSentEvent<CatalogEventDTO>> events() {
+			return events.subscribe(CURRENT);
+		}
+	}
+}
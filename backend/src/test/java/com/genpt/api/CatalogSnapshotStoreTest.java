@@ -0,0 +1,74 @@
+package com.genpt.api;
+
+import com.genpt.api.catalog.CatalogSnapshotStore;
+import com.genpt.api.catalog.ProductColumns;
+import com.genpt.api.dto.ProductDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotStoreTest {
+	private static final List<ProductDTO> PRODUCTS = List.of(
+			new ProductDTO(1L, "apple", "fruit", "2303-E1A-G-M-W209B-VM", "FruitsAll", true),
+			new ProductDTO(2L, "orange", "fruit", "5603-J1A-G-M-W982F-PO", "FruitsAll", false),
+			new ProductDTO(null, "pie ü", null, null, "HomeHome", true));
+
+	private final CatalogSnapshotStore store = new CatalogSnapshotStore(true);
+
+	@TempDir
+	private Path directory;
+
+	@Test
+	void testSnapshotRoundTrip() {
+		Path xmlFile = directory.resolve("products.xml");
+		store.write(xmlFile, ProductColumns.of(PRODUCTS), "hash");
+
+		assertTrue(store.exists(xmlFile));
+		Optional<ProductColumns> columns = store.read(xmlFile, "hash");
+		assertTrue(columns.isPresent());
+		assertEquals(PRODUCTS, columns.get().asList());
+	}
+
+	@Test
+	void testSnapshotOfOtherContentIsIgnored() {
+		Path xmlFile = directory.resolve("products.xml");
+		store.write(xmlFile, ProductColumns.of(PRODUCTS), "hash");
+
+		assertFalse(store.read(xmlFile, "other").isPresent());
+	}
+
+	@Test
+	void testCorruptSnapshotIsIgnored() throws Exception {
+		Path xmlFile = directory.resolve("products.xml");
+		store.write(xmlFile, ProductColumns.of(PRODUCTS), "hash");
+		Path snapshot = directory.resolve("products.xml" + CatalogSnapshotStore.SNAPSHOT_EXTENSION);
+		byte[] content = Files.readAllBytes(snapshot);
+		Files.write(snapshot, Arrays.copyOf(content, content.length / 2));
+
+		assertFalse(store.read(xmlFile, "hash").isPresent());
+	}
+
+	@Test
+	void testSnapshotWithChangedContentIsIgnored() throws Exception {
+		Path xmlFile = directory.resolve("products.xml");
+		store.write(xmlFile, ProductColumns.of(PRODUCTS), "hash");
+		Path snapshot = directory.resolve("products.xml" + CatalogSnapshotStore.SNAPSHOT_EXTENSION);
+		// a flipped bit in a name still deserializes, only the checksum tells it apart
+		byte[] content = Files.readAllBytes(snapshot);
+		int name = new String(content, StandardCharsets.ISO_8859_1).indexOf("apple");
+		content[name] ^= 1;
+		Files.write(snapshot, content);
+
+		assertFalse(store.read(xmlFile, "hash").isPresent());
+	}
+}
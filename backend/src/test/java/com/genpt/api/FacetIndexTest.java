@@ -0,0 +1,79 @@
+package com.genpt.api;
+
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.index.FacetIndex;
+import com.genpt.api.index.FacetQuery;
+import com.genpt.api.index.ProductIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FacetIndexTest {
+	private static final ProductDTO APPLE = new ProductDTO(1L, "apple", "fruit",
+			"2303-E1A-G-M-W209B-VM", "FruitsAll", true);
+	private static final ProductDTO ORANGE = new ProductDTO(2L, "orange", "fruit",
+			"5603-J1A-G-M-W982F-PO", "FruitsAll", false);
+	private static final ProductDTO APPLE_PIE = new ProductDTO(3L, "apple", "dish",
+			"9999-E7R-Q-M-K287B-YH", "HomeHome", true);
+
+	private final FacetIndex index = FacetIndex.of(ProductIndex.of(List.of(APPLE, ORANGE, APPLE_PIE)));
+
+	@Test
+	void testSelect() {
+		FacetIndex.Selection fruits = index.select(new FacetQuery(Set.of("fruit"), null, null, null, null), 10);
+		assertEquals(List.of(APPLE, ORANGE), fruits.getProducts(0, 10));
+		assertEquals(List.of(ORANGE), fruits.getProducts(1, 10));
+		// the category facet ignores the category filter
+		assertEquals(Map.of("fruit", 2, "dish", 1), fruits.getFacets().get(FacetIndex.CATEGORY));
+		assertEquals(Map.of("FruitsAll", 2), fruits.getFacets().get(FacetIndex.COMPANY_NAME));
+
+		FacetIndex.Selection active = index.select(new FacetQuery(null, Set.of("FruitsAll", "HomeHome"), true, 2L, null),
+				10);
+		assertEquals(List.of(APPLE_PIE), active.getProducts(0, 10));
+		assertEquals(0, index.select(new FacetQuery(Set.of("unknown"), null, null, null, null), 10).size());
+	}
+
+	@Test
+	void testSelectMatchesScan() {
+		Random random = new Random(42);
+		List<ProductDTO> products = new ArrayList<>();
+		for (long id = 0; id < 200_000; id++) {
+			products.add(new ProductDTO(id, "product " + id, "category " + random.nextInt(5),
+					"part " + id, "company " + random.nextInt(3000), random.nextBoolean()));
+		}
+		FacetIndex facetIndex = FacetIndex.of(ProductIndex.of(products));
+
+		FacetQuery query = new FacetQuery(Set.of("category 1", "category 3"),
+				Set.of("company 7", "company 42", "company 2999"), true, 1000L, 150_000L);
+		Predicate<ProductDTO> others = product -> product.isActive()
+				&& product.getId() >= 1000 && product.getId() <= 150_000;
+		Predicate<ProductDTO> category = product -> query.categories().contains(product.getCategory());
+		Predicate<ProductDTO> company = product -> query.companyNames().contains(product.getCompanyName());
+		List<ProductDTO> expected = products.stream().filter(others.and(category).and(company)).toList();
+
+		FacetIndex.Selection selection = facetIndex.select(query, 10_000);
+		assertEquals(expected.size(), selection.size());
+		assertEquals(expected, selection.getProducts(0, expected.size()));
+		assertEquals(expected.subList(5, 10), selection.getProducts(5, 5));
+		assertEquals(counts(products, others.and(company), ProductDTO::getCategory),
+				new TreeMap<>(selection.getFacets().get(FacetIndex.CATEGORY)));
+		assertEquals(counts(products, others.and(category), ProductDTO::getCompanyName),
+				new TreeMap<>(selection.getFacets().get(FacetIndex.COMPANY_NAME)));
+	}
+
+	private static Map<String, Integer> counts(List<ProductDTO> products, Predicate<ProductDTO> filter,
+											   Function<ProductDTO, String> field) {
+		return products.stream().filter(filter)
+				.collect(Collectors.groupingBy(field, TreeMap::new, Collectors.summingInt(product -> 1)));
+	}
+}
@@ -0,0 +1,119 @@
+package com.genpt.api;
+
+import com.genpt.api.exception.XmlParsingException;
+import com.genpt.api.model.Product;
+import com.genpt.api.parser.ParallelProductXmlParser;
+import com.genpt.api.parser.ProductChunks;
+import com.genpt.api.parser.ProductXmlParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelProductXmlParserTest {
+	private final ProductXmlParser productXmlParser = new ProductXmlParser();
+	private final ParallelProductXmlParser parser = new ParallelProductXmlParser(productXmlParser, 4, 256);
+
+	@TempDir
+	private Path directory;
+
+	@AfterEach
+	void tearDown() {
+		parser.shutdown();
+	}
+
+	@Test
+	void testProductsInDocumentOrder() throws Exception {
+		String xml = products(500, "");
+		assertEquals(parseSequentially(xml), parse(xml));
+	}
+
+	@Test
+	void testProductTagInCommentFallsBackToSequentialParsing() throws Exception {
+		String xml = products(200, "<!-- <Product id=\"0\"><Name>commented out</Name></Product> -->");
+		List<Product> products = parse(xml);
+		assertEquals(200, products.size());
+		assertEquals(parseSequentially(xml), products);
+	}
+
+	@Test
+	void testErrorReportsLineNumberInFile() throws Exception {
+		String xml = products(200, "").replace("<Name>product 150</Name>", "<Name>product 150</Nam>");
+		XmlParsingException exception = assertThrows(XmlParsingException.class, () -> parse(xml));
+		int line = xml.substring(0, xml.indexOf("</Nam>")).split("\n").length;
+		assertTrue(exception.getMessage().contains("at line " + line), exception.getMessage());
+	}
+
+	@Test
+	void testParseChangesParsesOnlyChangedChunks() throws Exception {
+		String xml = products(2000, "");
+		String changedXml = xml.replace("<Name>product 1000</Name>", "<Name>renamed product</Name>")
+				.replace("    <Product id=\"1500\">", "    <Product id=\"0\"><Name>inserted</Name></Product>\n"
+						+ "    <Product id=\"1500\">");
+		Path file = directory.resolve("products.xml");
+		Files.writeString(file, xml);
+		ProductChunks previous = parser.scanChunks(file);
+		List<Product> previousProducts = parse(xml);
+		assertEquals(2000, previous.productCount());
+
+		Files.writeString(file, changedXml);
+		List<Product> products = new ArrayList<>();
+		long parsed = parser.parseChanges(file, parser.scanChunks(file), previous,
+				new ParallelProductXmlParser.ChunkConsumer() {
+					@Override
+					public void unchanged(int from, int to) {
+						products.addAll(previousProducts.subList(from, to));
+					}
+
+					@Override
+					public void changed(Product product) {
+						products.add(product);
+					}
+				});
+
+		assertEquals(parseSequentially(changedXml), products);
+		assertTrue(parsed < 500, "parsed " + parsed + " products");
+	}
+
+	private List<Product> parse(String xml) throws Exception {
+		Path file = directory.resolve("products.xml");
+		Files.writeString(file, xml);
+		List<Product> products = new ArrayList<>();
+		long count = parser.parse(file, products::add);
+		assertEquals(products.size(), count);
+		return products;
+	}
+
+	private List<Product> parseSequentially(String xml) {
+		List<Product> products = new ArrayList<>();
+		productXmlParser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), products::add);
+		return products;
+	}
+
+	private static String products(int count, String inserted) {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Products>\n");
+		for (int i = 1; i <= count; i++) {
+			if (i == count / 2) {
+				xml.append(inserted).append('\n');
+			}
+			xml.append("    <Product id=\"").append(i).append("\">\n")
+					.append("        <Name>product ").append(i).append("</Name>\n")
+					.append("        <Category>category ").append(i % 7).append("</Category>\n")
+					.append("        <PartNumberNR>2303-E1A-G-M-W").append(i).append("</PartNumberNR>\n")
+					.append("        <CompanyName>Company ").append(i % 3).append("</CompanyName>\n")
+					.append("        <Active>").append(i % 2 == 0).append("</Active>\n")
+					.append("    </Product>\n");
+		}
+		return xml.append("</Products>\n").toString();
+	}
+}
@@ -0,0 +1,54 @@
+package com.genpt.api;
+
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.index.PartNumberTrie;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartNumberTrieTest {
+	private static final ProductDTO APPLE = new ProductDTO(1L, "apple", "fruit",
+			"2303-E1A-G-M-W209B-VM", "FruitsAll", true);
+	private static final ProductDTO ORANGE = new ProductDTO(2L, "orange", "fruit",
+			"2303-E2B-G-M-W982F-PO", "FruitsAll", false);
+	private static final ProductDTO PEAR = new ProductDTO(3L, "pear", "fruit",
+			"2303-E1A-Q-M", "FruitsAll", true);
+	private static final ProductDTO PIE = new ProductDTO(4L, "pie", "dishes",
+			"9999-E7R-Q-M-K287B-YH", "HomeHome", true);
+	private static final ProductDTO NO_PART_NUMBER = new ProductDTO(5L, "glass", "glass",
+			null, "HomeHome", true);
+
+	private final PartNumberTrie trie = PartNumberTrie.of(List.of(APPLE, ORANGE, PEAR, PIE, NO_PART_NUMBER));
+
+	@Test
+	void testExactLookupIsCaseInsensitive() {
+		assertEquals(List.of(APPLE), trie.find("2303-e1a-g-m-w209b-vm", false, 10).products());
+		assertTrue(trie.find("2303-E1A", false, 10).products().isEmpty());
+	}
+
+	@Test
+	void testSegmentPrefixSortedByPartNumber() {
+		PartNumberTrie.Matches matches = trie.find("2303", true, 10);
+		assertEquals(List.of(APPLE, PEAR, ORANGE), matches.products());
+		assertEquals(3, matches.total());
+	}
+
+	@Test
+	void testWildcardSegments() {
+		assertEquals(List.of(PEAR, PIE), trie.find("*-*-Q-M", true, 10).products());
+		assertEquals(List.of(APPLE, PEAR), trie.find("2303-E1*", true, 10).products());
+		assertEquals(List.of(APPLE, PEAR, ORANGE), trie.find("2303-E*", true, 10).products());
+		assertEquals(List.of(PEAR), trie.find("2303-*-*-M", false, 10).products());
+	}
+
+	@Test
+	void testLimitKeepsTotal() {
+		PartNumberTrie.Matches matches = trie.find("*", true, 2);
+		assertEquals(List.of(APPLE, PEAR), matches.products());
+		assertEquals(4, matches.total());
+		assertEquals(0, trie.find("1234", true, 10).total());
+	}
+}
@@ -0,0 +1,89 @@
+package com.genpt.api;
+
+import com.genpt.api.catalog.ProductColumns;
+import com.genpt.api.dto.ProductDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductColumnsTest {
+	private static final ProductDTO APPLE = new ProductDTO(1L, "apple", "fruit",
+			"2303-E1A-G-M-W209B-VM", "FruitsAll", true);
+	private static final ProductDTO ORANGE = new ProductDTO(2L, "orange", "fruit",
+			"5603-J1A-G-M-W982F-PO", "FruitsAll", false);
+	private static final ProductDTO EMPTY = new ProductDTO(null, null, null, null, null, false);
+
+	private final ProductColumns columns = ProductColumns.of(List.of(APPLE, ORANGE, EMPTY));
+
+	@Test
+	void testListViewEqualsStoredProducts() {
+		assertEquals(List.of(APPLE, ORANGE, EMPTY), columns.asList());
+		assertEquals(List.of(ORANGE), columns.asList().subList(1, 2));
+		assertThrows(IndexOutOfBoundsException.class, () -> columns.asList().get(3));
+	}
+
+	@Test
+	void testValuesAreDictionaryEncoded() {
+		ProductColumns.StringColumn categories = columns.categories();
+		assertEquals(1, categories.cardinality());
+		assertEquals(categories.code(0), categories.code(1));
+		assertEquals("fruit", categories.value(categories.find("fruit")));
+		assertEquals(ProductColumns.NO_CODE, categories.find("vegetable"));
+		assertEquals(ProductColumns.NO_CODE, columns.companyNames().code(2));
+	}
+
+	@Test
+	void testDictionaryIsSorted() {
+		ProductColumns.StringColumn names = columns.names();
+		assertEquals(0, names.find("apple"));
+		assertEquals(1, names.find("orange"));
+		assertNull(names.get(2));
+	}
+
+	@Test
+	void testFindEveryValue() {
+		List<ProductDTO> products = new ArrayList<>();
+		for (long id = 0; id < 5000; id++) {
+			products.add(new ProductDTO(id, "name " + id, null, null, null, true));
+		}
+		products.add(new ProductDTO(5000L, "", null, null, null, true));
+		products.add(new ProductDTO(5001L, "Łódź 🍎", null, null, null, true));
+		ProductColumns.StringColumn names = ProductColumns.of(products).names();
+
+		for (int code = 0; code < names.cardinality(); code++) {
+			assertEquals(code, names.find(names.value(code)));
+		}
+		assertEquals(ProductColumns.NO_CODE, names.find("name 5000"));
+		assertEquals(ProductColumns.NO_CODE, names.find("Łódź"));
+		assertEquals(ProductColumns.NO_CODE, names.find(null));
+		assertEquals(ProductColumns.NO_CODE, ProductColumns.of(List.of(EMPTY)).names().find("apple"));
+	}
+
+	@Test
+	void testWithChanges() {
+		ProductDTO banana = new ProductDTO(3L, "banana", "fruit", "1111-A1A-A-A-A111A-AA", "Bananas", true);
+		ProductDTO blueOrange = new ProductDTO(2L, "orange", "fruit", "5603-J1A-G-M-W982F-PO", "Azure", false);
+		BitSet removed = new BitSet();
+		removed.set(0);
+
+		ProductColumns changed = columns.withChanges(Map.of(1, blueOrange), removed, List.of(banana));
+
+		assertEquals(List.of(blueOrange, EMPTY, banana), changed.asList());
+		// new values are merged into the sorted dictionaries, old codes are shifted
+		ProductColumns.StringColumn companyNames = changed.companyNames();
+		assertEquals(List.of("Azure", "Bananas", "FruitsAll"), List.of(companyNames.value(0), companyNames.value(1),
+				companyNames.value(2)));
+		assertEquals(0, changed.names().find("apple"));
+		assertEquals(1, changed.names().find("banana"));
+		assertEquals(2, changed.names().find("orange"));
+		// the original columns are not modified
+		assertEquals(List.of(APPLE, ORANGE, EMPTY), columns.asList());
+	}
+}
@@ -0,0 +1,160 @@
+package com.genpt.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductControllerTest {
+	private static final String PRODUCTS = "/api/v1/products";
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@DynamicPropertySource
+	static void xmlFile(DynamicPropertyRegistry registry) throws IOException {
+		// a copy of the test catalog, so that changes and uploads do not touch the resources
+		Path xmlFile = Files.createTempDirectory("products-").resolve("products.xml");
+		try (InputStream products = new ClassPathResource("products.xml").getInputStream()) {
+			Files.copy(products, xmlFile);
+		}
+		xmlFile.toFile().deleteOnExit();
+		registry.add("files.xml.products", () -> xmlFile.toAbsolutePath().toString());
+		registry.add("files.xml.snapshots", () -> false);
+		registry.add("files.xml.watch.enabled", () -> false);
+	}
+	
+	@Test
+	void testMatchingETagIsNotModified() throws Exception {
+		String eTag = mockMvc.perform(get(PRODUCTS + "/all"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotNull(eTag);
+		
+		mockMvc.perform(get(PRODUCTS + "/all").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, eTag))
+				.andExpect(content().string(""));
+		mockMvc.perform(get(PRODUCTS + "/apple").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get(PRODUCTS + "/all").header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+				.andExpect(status().isOk());
+	}
+	
+	@Test
+	void testUnmodifiedSinceIsNotModified() throws Exception {
+		String lastModified = mockMvc.perform(get(PRODUCTS + "/read-file"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+		assertNotNull(lastModified);
+		
+		mockMvc.perform(get(PRODUCTS + "/read-file").header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+	}
+	
+	@Test
+	void testChangesAndUploadsChangeETag() throws Exception {
+		String eTag = mockMvc.perform(get(PRODUCTS + "/all"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		
+		mockMvc.perform(patch(PRODUCTS)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"upsert\": [{\"id\": 42, \"name\": \"pear\", \"active\": true}]}"))
+				.andExpect(status().isOk());
+		String changedETag = mockMvc.perform(get(PRODUCTS + "/all").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(eTag, changedETag);
+		
+		byte[] upload;
+		try (InputStream products = new ClassPathResource("products.xml").getInputStream()) {
+			upload = new String(products.readAllBytes(), StandardCharsets.UTF_8)
+					.replace("<Name>orange</Name>", "<Name>lemon</Name>")
+					.getBytes(StandardCharsets.UTF_8);
+		}
+		mockMvc.perform(multipart(HttpMethod.PUT, PRODUCTS + "/update-file")
+						.file(new MockMultipartFile("file", "products.xml", MediaType.APPLICATION_XML_VALUE, upload)))
+				.andExpect(status().isOk());
+		String uploadedETag = mockMvc.perform(get(PRODUCTS + "/all").header(HttpHeaders.IF_NONE_MATCH, changedETag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(changedETag, uploadedETag);
+		assertEquals(uploadedETag, mockMvc.perform(get(PRODUCTS + "/lemon"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG));
+	}
+	
+	@Test
+	void testStreamIncludesChanges() throws Exception {
+		mockMvc.perform(patch(PRODUCTS)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"upsert\": [{\"id\": 43, \"name\": \"plum\", \"active\": true}]}"))
+				.andExpect(status().isOk());
+		
+		MvcResult stream = mockMvc.perform(get(PRODUCTS + "/stream"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(stream))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"plum\"")));
+		
+		String catalogETag = mockMvc.perform(get(PRODUCTS + "/all"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		String xmlETag = mockMvc.perform(get(PRODUCTS + "/xml"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotNull(xmlETag);
+		assertNotEquals(catalogETag, xmlETag);
+		mockMvc.perform(get(PRODUCTS + "/xml").header(HttpHeaders.IF_NONE_MATCH, xmlETag))
+				.andExpect(status().isNotModified());
+	}
+	
+	@Test
+	void testAllAsNdjsonFlux() throws Exception {
+		MvcResult all = mockMvc.perform(get(PRODUCTS + "/all").accept(MediaType.APPLICATION_NDJSON))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String ndjson = mockMvc.perform(asyncDispatch(all))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		String json = mockMvc.perform(get(PRODUCTS + "/all"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andReturn().getResponse().getContentAsString();
+		
+		assertEquals(json.split("\\{\"id\"").length - 1, ndjson.strip().split("\n").length);
+		assertEquals(all.getResponse().getHeader(HttpHeaders.ETAG), mockMvc.perform(get(PRODUCTS + "/all"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG));
+	}
+}
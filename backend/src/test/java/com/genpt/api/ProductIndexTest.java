@@ -0,0 +1,84 @@
+package com.genpt.api;
+
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.index.ProductIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductIndexTest {
+	private static final ProductDTO APPLE = new ProductDTO(1L, "apple", "fruit",
+			"2303-E1A-G-M-W209B-VM", "FruitsAll", true);
+	private static final ProductDTO ORANGE = new ProductDTO(2L, "orange", "fruit",
+			"5603-J1A-G-M-W982F-PO", "FruitsAll", false);
+	private static final ProductDTO APPLE_PIE = new ProductDTO(3L, "apple", "dish",
+			"9999-E7R-Q-M-K287B-YH", "HomeHome", true);
+
+	private final ProductIndex index = ProductIndex.of(List.of(APPLE, ORANGE, APPLE_PIE));
+
+	@Test
+	void testFindByName() {
+		assertEquals(List.of(APPLE, APPLE_PIE), index.findByName("apple"));
+		assertEquals(List.of(ORANGE), index.findByName("orange"));
+		assertTrue(index.findByName("Apple").isEmpty());
+		assertTrue(index.findByName("unknown").isEmpty());
+	}
+
+	@Test
+	void testFindByOtherKeys() {
+		assertEquals(List.of(ORANGE), index.findById(2L));
+		assertEquals(List.of(APPLE, ORANGE), index.findByCategory("fruit"));
+		assertEquals(List.of(APPLE_PIE), index.findByCompanyName("HomeHome"));
+		assertEquals(List.of(APPLE), index.findByPartNumber("2303-E1A-G-M-W209B-VM"));
+		assertTrue(index.findById(42L).isEmpty());
+	}
+
+	@Test
+	void testProductsKeepDocumentOrder() {
+		assertEquals(3, index.size());
+		assertEquals(List.of(APPLE, ORANGE, APPLE_PIE), index.getProducts());
+	}
+
+	@Test
+	void testLookUpThroughFilter() {
+		assertEquals(new ProductIndex.Lookup(true, List.of(APPLE, APPLE_PIE)), index.lookUpName("apple"));
+		assertEquals(new ProductIndex.Lookup(true, List.of(ORANGE)), index.lookUpId(2L));
+		assertFalse(index.lookUpName(null).passedFilter());
+		assertFalse(index.lookUpId(null).passedFilter());
+		assertTrue(index.lookUpName("unknown").products().isEmpty());
+		assertTrue(index.lookUpId(42L).products().isEmpty());
+	}
+
+	@Test
+	void testFilterRejectsUnknownKeys() {
+		assertTrue(index.mightContainName("apple"));
+		assertTrue(index.mightContainId(3L));
+		assertFalse(index.mightContainName(null));
+		assertFalse(index.mightContainId(null));
+
+		List<ProductDTO> products = new ArrayList<>();
+		for (long id = 0; id < 100_000; id++) {
+			products.add(new ProductDTO(id * 2, "product " + id, "category", "part " + id, "company", true));
+		}
+		ProductIndex largeIndex = ProductIndex.of(products);
+		int falsePositives = 0;
+		for (long id = 0; id < 100_000; id++) {
+			// no false negatives
+			assertTrue(largeIndex.mightContainName("product " + id));
+			assertTrue(largeIndex.mightContainId(id * 2));
+			if (largeIndex.mightContainName("unknown " + id)) {
+				falsePositives++;
+			}
+			if (largeIndex.mightContainId(id * 2 + 1)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(largeIndex.nameFilterFalsePositiveRate() < 0.01);
+		assertTrue(falsePositives < 2 * 100_000 * 0.015, "false positives: " + falsePositives);
+	}
+}
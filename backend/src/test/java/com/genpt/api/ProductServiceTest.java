@@ -1,12 +1,34 @@
 package com.genpt.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genpt.api.catalog.CatalogChangeLog;
+import com.genpt.api.catalog.CatalogSnapshotStore;
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.dto.ProductBatchDTO;
+import com.genpt.api.dto.ProductBatchRequestDTO;
+import com.genpt.api.dto.ProductChangesDTO;
 import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.dto.ProductPageDTO;
 import com.genpt.api.exception.EmptyResourceException;
+import com.genpt.api.exception.InvalidXmlFileException;
+import com.genpt.api.exception.ResourceNotFoundException;
+import com.genpt.api.exception.XmlParsingException;
 import com.genpt.api.mapper.ProductMapper;
+import com.genpt.api.metrics.CatalogMetrics;
+import com.genpt.api.parser.ParallelProductXmlParser;
+import com.genpt.api.parser.ProductXmlParser;
+import com.genpt.api.parser.ProductXmlWriter;
+import com.genpt.api.service.CatalogEvents;
 import com.genpt.api.service.ProductService;
+import com.genpt.api.util.PageCursor;
+import com.genpt.api.util.ProductProjection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -16,17 +38,36 @@ import org.springframework.core.io.ResourceLoader;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.InvalidParameterException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -75,20 +116,32 @@ class ProductServiceTest {
 		MockitoAnnotations.openMocks(ProductServiceTest.class);
 		
 		// Manually initialize the mock for the static resourceLoader
+		tempFile = File.createTempFile("test", ".xml");
+		tempFile.deleteOnExit();
+		Files.writeString(tempFile.toPath(), xmlContent);
+		productService = newProductService(tempFile);
+	}
+	
+	private static ProductService newProductService(File xmlFile) throws Exception {
+		return newProductService(xmlFile, new SimpleMeterRegistry());
+	}
+	
+	private static ProductService newProductService(File xmlFile, MeterRegistry meterRegistry) throws Exception {
 		resourceLoader = mock(ResourceLoader.class);
 		ProductMapper productMapper = new ProductMapper(); // this is actual mapper but the resourceLoader is mocked
-		productService = new ProductService(productMapper, resourceLoader);
+		ProductXmlParser productXmlParser = new ProductXmlParser();
+		ProductService service = new ProductService(productMapper, productXmlParser,
+				new ParallelProductXmlParser(productXmlParser, 2, 64), new ProductXmlWriter(), resourceLoader,
+				new CatalogSnapshotStore(false), new CatalogChangeLog(new ObjectMapper()),
+				new CatalogMetrics(meterRegistry),
+				new CatalogEvents(Duration.ofMinutes(1)));
 		
 		// mock resource loader behaviour
 		Resource resource = mock(Resource.class);
-		tempFile = File.createTempFile("test", ".xml");
-		tempFile.deleteOnExit();
-		Files.writeString(tempFile.toPath(), xmlContent);
-		InputStream inputStream = new ByteArrayInputStream(xmlContent.getBytes(StandardCharsets.UTF_8));
 		
-		when(resourceLoader.getResource(anyString())).thenReturn(resource);
-		when(resource.getFile()).thenReturn(tempFile);
-		when(resource.getInputStream()).thenReturn(inputStream);
+		lenient().when(resourceLoader.getResource(anyString())).thenReturn(resource);
+		lenient().when(resource.getFile()).thenReturn(xmlFile);
+		return service;
 	}
 	
 	@Test
@@ -129,8 +182,8 @@ class ProductServiceTest {
 	// --- extra ---
 	
 	@Test
-	void testGetXmlFileContent() {
-		String fileContent = productService.getXmlFileContent(XML_FILE_NAME);
+	void testGetXmlFileContent() throws Exception {
+		String fileContent = productService.getXmlFileResource(XML_FILE_NAME).getContentAsString(StandardCharsets.UTF_8);
         assertEquals(fileContent, xmlContent);
 	}
 	
@@ -147,6 +200,66 @@ class ProductServiceTest {
 		assertEquals(xmlContent, updatedContent);
 	}
 	
+	@Test
+	void testUpdateFilePublishedAfterConcurrentChange(@TempDir Path tempDir) throws Exception {
+		Path xmlFile = tempDir.resolve("products.xml");
+		Files.writeString(xmlFile, xmlContent);
+		ProductService service = newProductService(xmlFile.toFile());
+		long initialVersion = service.getCatalogVersion(XML_FILE_NAME);
+		String uploadedContent = xmlContent.replace("<Name>orange</Name>", "<Name>lemon</Name>");
+		long[] changedVersion = new long[1];
+		MockMultipartFile file = new MockMultipartFile("file", "products.xml",
+				MediaType.APPLICATION_XML_VALUE, uploadedContent.getBytes(StandardCharsets.UTF_8)) {
+			@Override
+			public InputStream getInputStream() throws IOException {
+				// a change is published while the upload is parsed
+				changedVersion[0] = service.applyChanges(XML_FILE_NAME, ProductChangesDTO.builder()
+						.delete(List.of(3L))
+						.build()).getVersion();
+				return super.getInputStream();
+			}
+		};
+		
+		service.updateFile(file, XML_FILE_NAME);
+		
+		ProductCatalog uploaded = service.getCatalog(XML_FILE_NAME);
+		assertTrue(changedVersion[0] > initialVersion);
+		assertTrue(uploaded.getVersion() > changedVersion[0]);
+		assertEquals(List.of("apple", "lemon", "test"),
+				uploaded.getProducts().stream().map(ProductDTO::getName).toList());
+		assertEquals(uploadedContent, Files.readString(xmlFile));
+		assertFalse(Files.exists(tempDir.resolve("products.xml.changes")));
+	}
+	
+	@Test
+	void testUpdateFileInvalidProduct() throws Exception {
+		String invalidContent = xmlContent.replace("<Name>orange</Name>", "");
+		MockMultipartFile file = new MockMultipartFile("file", "products.xml",
+				MediaType.APPLICATION_XML_VALUE, invalidContent.getBytes(StandardCharsets.UTF_8));
+		
+		Exception exception = assertThrows(
+				InvalidXmlFileException.class, () -> productService.updateFile(file, XML_FILE_NAME)
+		);
+		
+		assertEquals("Invalid XML file: Invalid product at line 10: element <Name> is missing", exception.getMessage());
+		// the original file is kept
+		assertEquals(xmlContent, Files.readString(tempFile.toPath()));
+	}
+	
+	@Test
+	void testUpdateFileMalformed() {
+		String malformedContent = xmlContent.replace("</Category>", "</Categry>");
+		MockMultipartFile file = new MockMultipartFile("file", "products.xml",
+				MediaType.APPLICATION_XML_VALUE, malformedContent.getBytes(StandardCharsets.UTF_8));
+		
+		Exception exception = assertThrows(
+				InvalidXmlFileException.class, () -> productService.updateFile(file, XML_FILE_NAME)
+		);
+		
+		assertTrue(exception.getMessage().startsWith("Invalid XML file: Error while parsing XML at line 5"),
+				exception.getMessage());
+	}
+	
 	@Test
 	void testUpdateFileEmpty() {
 		MockMultipartFile file = new MockMultipartFile("file", "test.xml",
@@ -178,4 +291,340 @@ class ProductServiceTest {
 		// Assert the exception message
 		assertEquals(expectedMessage, actualMessage);
 	}
+	
+	@Test
+	void testGetProductsPage() {
+		ProductPageDTO firstPage = productService.getProductsPage(XML_FILE_NAME, 0, 2, null, null);
+		assertEquals(2, firstPage.getProducts().size());
+		assertEquals(0, firstPage.getPage());
+		assertEquals(3, firstPage.getTotalElements());
+		assertEquals(2, firstPage.getTotalPages());
+		assertNotNull(firstPage.getNextCursor());
+		
+		ProductPageDTO lastPage = productService.getProductsPage(XML_FILE_NAME, 1, 2, null, null);
+		assertEquals(List.of("test"), names(lastPage));
+		assertEquals(1, lastPage.getPage());
+		assertNull(lastPage.getNextCursor());
+		
+		// a page past the end is empty and reported as the requested page
+		ProductPageDTO pastEnd = productService.getProductsPage(XML_FILE_NAME, 5, 2, null, null);
+		assertTrue(pastEnd.getProducts().isEmpty());
+		assertEquals(5, pastEnd.getPage());
+		assertNull(pastEnd.getNextCursor());
+		
+		assertThrows(InvalidParameterException.class,
+				() -> productService.getProductsPage(XML_FILE_NAME, -1, 2, null, null));
+		assertThrows(InvalidParameterException.class,
+				() -> productService.getProductsPage(XML_FILE_NAME, 0, 0, null, null));
+	}
+	
+	@Test
+	void testGetProductsPageWithCursor() {
+		List<String> names = new ArrayList<>();
+		String cursor = null;
+		do {
+			ProductPageDTO page = productService.getProductsPage(XML_FILE_NAME, null, 2, cursor, null);
+			if (cursor != null) {
+				// cursor pages have no page number
+				assertNull(page.getPage());
+				assertNull(page.getTotalPages());
+			}
+			names.addAll(names(page));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertEquals(List.of("apple", "orange", "test"), names);
+		
+		String nextCursor = productService.getProductsPage(XML_FILE_NAME, null, 1, null, null).getNextCursor();
+		Exception exception = assertThrows(InvalidParameterException.class,
+				() -> productService.getProductsPage(XML_FILE_NAME, 1, 1, nextCursor, null));
+		assertEquals("Only one of page and cursor can be given", exception.getMessage());
+		
+		String expiredCursor = new PageCursor(productService.getCatalogVersion(XML_FILE_NAME) + 1, 1).encode();
+		assertThrows(InvalidParameterException.class,
+				() -> productService.getProductsPage(XML_FILE_NAME, null, 1, expiredCursor, null));
+	}
+	
+	@Test
+	void testPageCursorRoundTrip() {
+		PageCursor cursor = new PageCursor(42L, 1000);
+		assertEquals(cursor, PageCursor.decode(cursor.encode()));
+		assertThrows(InvalidParameterException.class, () -> PageCursor.decode("not a cursor"));
+		assertThrows(InvalidParameterException.class, () -> PageCursor.decode(new PageCursor(1L, -1).encode()));
+	}
+	
+	@Test
+	void testGetProductsPageWithProjection() {
+		ProductPageDTO page = productService.getProductsPage(XML_FILE_NAME, 0, 1, null, "name, id,name");
+		
+		Map<?, ?> apple = (Map<?, ?>) page.getProducts().get(0);
+		assertEquals(List.of("name", "id"), List.copyOf(apple.keySet()));
+		assertEquals("apple", apple.get("name"));
+		assertEquals(1L, apple.get("id"));
+		
+		Exception exception = assertThrows(InvalidParameterException.class,
+				() -> ProductProjection.parse("id,price"));
+		assertTrue(exception.getMessage().startsWith("Unknown field: 'price'"));
+		assertThrows(InvalidParameterException.class, () -> ProductProjection.parse(" , "));
+	}
+	
+	private static List<String> names(ProductPageDTO page) {
+		return page.getProducts().stream().map(product -> ((ProductDTO) product).getName()).toList();
+	}
+	
+	@Test
+	void testApplyChanges(@TempDir Path tempDir) throws Exception {
+		Path xmlFile = tempDir.resolve("products.xml");
+		Files.writeString(xmlFile, xmlContent);
+		ProductService service = newProductService(xmlFile.toFile());
+		ProductDTO cheaperApple = new ProductDTO(1L, "apple", "fruit",
+				"2303-E1A-G-M-W209B-VM", "FruitsAll", false);
+		ProductDTO pear = new ProductDTO(4L, "pear", "fruit",
+				"1111-A1A-A-A-A111A-AA", "FruitsAll", true);
+		
+		service.applyChanges(XML_FILE_NAME, ProductChangesDTO.builder()
+				.upsert(List.of(cheaperApple, pear))
+				.delete(List.of(2L))
+				.build());
+		service.deleteProduct(XML_FILE_NAME, 3L);
+		
+		List<ProductDTO> expected = List.of(cheaperApple, pear);
+		ProductCatalog changed = service.getCatalog(XML_FILE_NAME);
+		assertEquals(expected, changed.getProducts());
+		assertEquals(List.of(pear), service.getProductByName(XML_FILE_NAME, "pear"));
+		assertThrows(ResourceNotFoundException.class, () -> service.getProductByName(XML_FILE_NAME, "orange"));
+		assertThrows(ResourceNotFoundException.class, () -> service.deleteProduct(XML_FILE_NAME, 3L));
+		// the XML file is not touched until the changes are compacted
+		assertEquals(xmlContent, Files.readString(xmlFile));
+		
+		// a restart replays the change log and ends up with the same catalog
+		ProductCatalog replayed = newProductService(xmlFile.toFile()).getCatalog(XML_FILE_NAME);
+		assertEquals(expected, replayed.getProducts());
+		assertEquals(changed.getETag(), replayed.getETag());
+		
+		service.compactChanges(XML_FILE_NAME);
+		assertFalse(Files.exists(tempDir.resolve("products.xml.changes")));
+		assertEquals(expected, newProductService(xmlFile.toFile()).getAllProducts(XML_FILE_NAME));
+	}
+	
+	@Test
+	void testApplyChangesWithoutName() {
+		ProductChangesDTO changes = ProductChangesDTO.builder()
+				.upsert(List.of(new ProductDTO(5L, " ", null, null, null, true)))
+				.build();
+		
+		Exception exception = assertThrows(
+				InvalidParameterException.class, () -> productService.applyChanges(XML_FILE_NAME, changes)
+		);
+		
+		assertEquals("Product 5 needs a name", exception.getMessage());
+	}
+	
+	@Test
+	void testApplyChangesWithControlCharacter(@TempDir Path tempDir) throws Exception {
+		Path xmlFile = tempDir.resolve("products.xml");
+		Files.writeString(xmlFile, xmlContent);
+		ProductService service = newProductService(xmlFile.toFile());
+		ProductDTO invalid = new ProductDTO(4L, "pe\u0001ar", "fruit", null, "FruitsAll", true);
+		ProductDTO pear = new ProductDTO(5L, "pear", "fruit", null, "FruitsAll", true);
+		
+		Exception exception = assertThrows(InvalidParameterException.class, () -> service.applyChanges(XML_FILE_NAME,
+				ProductChangesDTO.builder().upsert(List.of(pear, invalid)).build()));
+		assertEquals("Product 4 contains characters that are not allowed in XML", exception.getMessage());
+		assertEquals(3, service.getCatalog(XML_FILE_NAME).size());
+		
+		// the compacted file can be read again
+		service.applyChanges(XML_FILE_NAME, ProductChangesDTO.builder().upsert(List.of(pear)).build());
+		service.compactChanges(XML_FILE_NAME);
+		assertEquals(4, newProductService(xmlFile.toFile()).getCatalog(XML_FILE_NAME).size());
+		
+		// the writer refuses such values as well, rather than writing a file that cannot be parsed
+		assertThrows(IOException.class, () -> new ProductXmlWriter().write(List.of(invalid),
+				OutputStream.nullOutputStream()));
+	}
+	
+	@Test
+	void testFindProducts() {
+		ProductBatchDTO batch = productService.findProducts(XML_FILE_NAME, ProductBatchRequestDTO.builder()
+				.names(List.of("orange", "banana"))
+				.ids(List.of(3L))
+				.build());
+		
+		assertEquals(2, batch.getFound());
+		assertEquals(1, batch.getNotFound());
+		assertEquals(List.of("orange"), batch.getResults().get(0).getProducts().stream().map(ProductDTO::getName).toList());
+		assertFalse(batch.getResults().get(1).isFound());
+		assertEquals("banana", batch.getResults().get(1).getName());
+		assertEquals(3L, batch.getResults().get(2).getProducts().get(0).getId());
+	}
+	
+	@Test
+	void testFindProductsWithNullKey() {
+		ProductBatchRequestDTO request = ProductBatchRequestDTO.builder().ids(Arrays.asList(1L, null)).build();
+		assertThrows(InvalidParameterException.class, () -> productService.findProducts(XML_FILE_NAME, request));
+	}
+	
+	@Test
+	void testReloadExternalFile(@TempDir Path tempDir) throws Exception {
+		Path xmlFile = tempDir.resolve("products.xml");
+		Files.writeString(xmlFile, xmlContent);
+		// an absolute path is read from the file system, not from the classpath
+		String fileName = xmlFile.toString();
+		ProductService service = newProductService(null);
+		assertEquals(3, service.readXmlFile(fileName));
+		assertFalse(service.reloadFile(fileName));
+		
+		Files.writeString(xmlFile, xmlContent.replace("<Name>orange</Name>", "<Name>lemon</Name>"));
+		
+		assertTrue(service.reloadFile(fileName));
+		assertEquals(List.of("apple", "lemon", "test"),
+				service.getAllProducts(fileName).stream().map(ProductDTO::getName).toList());
+		assertFalse(service.reloadFile(fileName));
+	}
+	
+	@Test
+	void testLoadMetrics(@TempDir Path tempDir) throws Exception {
+		Path xmlFile = tempDir.resolve("products.xml");
+		Files.writeString(xmlFile, xmlContent);
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ProductService service = newProductService(null, meterRegistry);
+		service.readXmlFile(xmlFile.toString());
+		Files.writeString(xmlFile, xmlContent.replace("<Name>orange</Name>", "<Name>lemon</Name>"));
+		service.reloadFile(xmlFile.toString());
+		
+		assertEquals(1, meterRegistry.get("catalog.load").tags("source", "xml", "outcome", "success").timer().count());
+		assertEquals(1, meterRegistry.get("catalog.load").tags("source", "incremental").timer().count());
+		assertEquals(3, meterRegistry.get("catalog.products.mapped").tag("source", "xml").counter().count());
+		assertEquals(Files.size(xmlFile), meterRegistry.get("catalog.load.bytes").tag("source", "incremental")
+				.summary().totalAmount());
+		assertEquals(3, meterRegistry.get("catalog.products").gauge().value());
+		assertEquals(2, meterRegistry.get("catalog.version").gauge().value());
+	}
+
+	@Test
+	void testConcurrentFirstAccessLoadsOnce() throws Exception {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ProductService service = newProductService(tempFile, meterRegistry);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<ProductCatalog>> catalogs = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				catalogs.add(executor.submit(() -> {
+					start.await();
+					return service.getCatalog(XML_FILE_NAME);
+				}));
+			}
+			start.countDown();
+			for (Future<ProductCatalog> catalog : catalogs) {
+				assertSame(catalogs.get(0).get(), catalog.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertEquals(1, meterRegistry.get("catalog.load").timers().stream().mapToLong(Timer::count).sum());
+	}
+	
+	@Test
+	void testConcurrentChangesAndReadsSeeConsistentSnapshots(@TempDir Path tempDir) throws Exception {
+		Path xmlFile = tempDir.resolve("products.xml");
+		Files.writeString(xmlFile, xmlContent);
+		ProductService service = newProductService(xmlFile.toFile());
+		long initialVersion = service.getCatalog(XML_FILE_NAME).getVersion();
+		int writers = 4;
+		int readers = 4;
+		int batches = 50;
+		// every thread starts at the same time, so that changes and reads really overlap
+		CyclicBarrier start = new CyclicBarrier(writers + readers);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		Map<Long, Integer> sizeByVersion = new ConcurrentHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+		try {
+			List<Future<?>> writes = new ArrayList<>();
+			for (int writer = 0; writer < writers; writer++) {
+				long firstId = 1000L * (writer + 1);
+				writes.add(executor.submit(() -> {
+					start.await();
+					for (int batch = 0; batch < batches; batch++) {
+						// a pair of products that is only ever published together
+						long id = firstId + 2L * batch;
+						service.applyChanges(XML_FILE_NAME, ProductChangesDTO.builder()
+								.upsert(List.of(new ProductDTO(id, "pair " + id, "pair", null, null, true),
+										new ProductDTO(id + 1, "pair " + id, "pair", null, null, true)))
+								.build());
+					}
+					return null;
+				}));
+			}
+			List<Future<?>> reads = new ArrayList<>();
+			for (int reader = 0; reader < readers; reader++) {
+				reads.add(executor.submit(() -> {
+					start.await();
+					long lastVersion = 0;
+					while (writing.get()) {
+						ProductCatalog catalog = service.getCatalog(XML_FILE_NAME);
+						assertTrue(catalog.getVersion() >= lastVersion, "versions never go back");
+						lastVersion = catalog.getVersion();
+						List<ProductDTO> products = catalog.getProducts();
+						assertEquals(products.size(), catalog.size());
+						assertEquals(products.size(),
+								sizeByVersion.computeIfAbsent(catalog.getVersion(), version -> products.size()));
+						for (ProductDTO product : products) {
+							assertEquals(List.of(product), catalog.getIndex().findById(product.getId()));
+							if ("pair".equals(product.getCategory())) {
+								long otherId = product.getId() % 2 == 0 ? product.getId() + 1 : product.getId() - 1;
+								assertEquals(1, catalog.getIndex().findById(otherId).size(), "both of a pair");
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			try {
+				for (Future<?> write : writes) {
+					write.get();
+				}
+			}
+			finally {
+				writing.set(false);
+			}
+			for (Future<?> read : reads) {
+				read.get();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		// no change was lost and every change got its own version
+		ProductCatalog last = service.getCatalog(XML_FILE_NAME);
+		assertEquals(3 + writers * batches * 2, last.size());
+		assertEquals(initialVersion + writers * batches, last.getVersion());
+	}
+	
+	@Test
+	void testFailedLoadIsRetried(@TempDir Path tempDir) throws Exception {
+		Path xmlFile = tempDir.resolve("products.xml");
+		Files.writeString(xmlFile, xmlContent.replace("</Category>", "</Categry>"));
+		ProductService service = newProductService(xmlFile.toFile());
+		assertThrows(XmlParsingException.class, () -> service.getCatalog(XML_FILE_NAME));
+		
+		Files.writeString(xmlFile, xmlContent);
+		assertEquals(3, service.getCatalog(XML_FILE_NAME).size());
+	}
+	
+	@Test
+	void testLookupFilterMetrics() throws Exception {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ProductService service = newProductService(tempFile, meterRegistry);
+		service.getProductByName(XML_FILE_NAME, "apple");
+		assertThrows(ResourceNotFoundException.class, () -> service.getProductByName(XML_FILE_NAME, "unknown"));
+		
+		assertEquals(1, meterRegistry.get("catalog.lookup.filter").tags("key", "name", "result", "found")
+				.counter().count());
+		assertEquals(1, meterRegistry.get("catalog.lookup.filter").tags("key", "name", "result", "rejected")
+				.counter().count() + meterRegistry.get("catalog.lookup.filter")
+				.tags("key", "name", "result", "false_positive").counter().count());
+		assertTrue(meterRegistry.get("catalog.lookup.filter.expected.fpp").tag("key", "name").gauge().value() > 0);
+	}
 }
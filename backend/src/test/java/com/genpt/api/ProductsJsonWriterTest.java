@@ -0,0 +1,107 @@
+package com.genpt.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.genpt.api.catalog.ProductCatalog;
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.metrics.CatalogMetrics;
+import com.genpt.api.util.ApiResponse;
+import com.genpt.api.util.ProductsJsonWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductsJsonWriterTest {
+	private static final LocalDateTime TIME_STAMP = LocalDateTime.of(2024, 5, 17, 12, 30, 15, 123_456_789);
+	
+	/** Configured like the ObjectMapper of the application, which Spring Boot sets up to write ISO dates. */
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.build();
+	private final ProductsJsonWriter productsJsonWriter = new ProductsJsonWriter(objectMapper,
+			new CatalogMetrics(new SimpleMeterRegistry()));
+	
+	@Test
+	void testWriteMatchesApiResponse() throws Exception {
+		List<ProductDTO> products = List.of(
+				new ProductDTO(1L, "apple", "fruit", "2303-E1A-G-M-W209B-VM", "FruitsAll", true),
+				new ProductDTO(2L, "\"quoted\" \\ back\\slash", "tab\tand\nnewline", "</script>", "Łódź & Søn", false),
+				new ProductDTO(null, "control \u0001 and emoji 🍎", null, null, null, true));
+		
+		assertWrittenAsApiResponse(ProductCatalog.of(1, products, "hash", Instant.EPOCH), "Fetched \"all\" records.");
+		assertWrittenAsApiResponse(ProductCatalog.of(2, List.of(), "empty", Instant.EPOCH), "Fetched all records.");
+		assertWrittenAsApiResponse(ProductCatalog.of(3, products, "hash", Instant.EPOCH), null);
+	}
+	
+	@Test
+	void testWriteLines() throws Exception {
+		List<ProductDTO> products = new ArrayList<>();
+		for (long id = 0; id < 10_000; id++) {
+			products.add(new ProductDTO(id, "product\n" + id, "category", "part " + id, "company", id % 2 == 0));
+		}
+		CountingOutputStream outputStream = new CountingOutputStream();
+		productsJsonWriter.writeLines(products.stream(), outputStream);
+		
+		String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n", -1);
+		// every product on its own line, and the output ends with a line break
+		assertEquals(products.size() + 1, lines.length);
+		assertEquals("", lines[products.size()]);
+		for (int i = 0; i < products.size(); i++) {
+			assertEquals(products.get(i), objectMapper.readValue(lines[i], ProductDTO.class));
+		}
+		// written in buffers of the generator and flushed once, not once per product
+		assertEquals(1, outputStream.flushes);
+		assertTrue(outputStream.writes < products.size() / 10, "writes: " + outputStream.writes);
+	}
+	
+	@Test
+	void testWriteLinesWithoutProducts() throws Exception {
+		CountingOutputStream outputStream = new CountingOutputStream();
+		productsJsonWriter.writeLines(Stream.empty(), outputStream);
+		assertEquals(0, outputStream.size());
+	}
+	
+	private void assertWrittenAsApiResponse(ProductCatalog catalog, String message) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		productsJsonWriter.write(catalog, message, TIME_STAMP, response);
+		
+		// written like the message converter writes ApiResponse, as UTF-8 bytes
+		byte[] expected = objectMapper.writeValueAsBytes(ApiResponse.builder()
+				.timeStamp(TIME_STAMP)
+				.message(message)
+				.data(Map.of("products", catalog.getProducts()))
+				.build());
+		assertEquals(new String(expected, StandardCharsets.UTF_8),
+				new String(response.getContentAsByteArray(), StandardCharsets.UTF_8));
+		assertEquals(expected.length, response.getContentLength());
+	}
+	
+	private static class CountingOutputStream extends ByteArrayOutputStream {
+		private int writes;
+		private int flushes;
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			writes++;
+			super.write(b, off, len);
+		}
+		
+		@Override
+		public void flush() {
+			flushes++;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.genpt.api;
+
+import com.genpt.api.dto.ProductDTO;
+import com.genpt.api.index.SearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+	private static final ProductDTO APPLE = new ProductDTO(1L, "Green Apple", "fruit",
+			"2303-E1A-G-M-W209B-VM", "FruitsAll", true);
+	private static final ProductDTO ORANGE = new ProductDTO(2L, "orange", "fruit",
+			"5603-J1A-G-M-W982F-PO", "FruitsAll", false);
+	private static final ProductDTO APPLE_PIE = new ProductDTO(3L, "pie", "apple dishes",
+			"9999-E7R-Q-M-K287B-YH", "HomeHome", true);
+
+	private final SearchIndex index = SearchIndex.of(List.of(APPLE, ORANGE, APPLE_PIE));
+
+	@Test
+	void testCaseInsensitiveTokenMatchRanksNameFirst() {
+		assertEquals(List.of(APPLE, APPLE_PIE), index.search("APPLE", 10));
+	}
+
+	@Test
+	void testPrefixMatch() {
+		assertEquals(List.of(ORANGE), index.search("ora", 10));
+		assertEquals(List.of(APPLE_PIE), index.search("dish", 10));
+	}
+
+	@Test
+	void testPartNumberSegments() {
+		assertEquals(List.of(APPLE), index.search("2303-E1A", 10));
+		assertEquals(List.of(ORANGE), index.search("w982", 10));
+	}
+
+	@Test
+	void testNgramMatchInsideWord() {
+		assertEquals(List.of(APPLE), index.search("209b", 10));
+		assertEquals(List.of(ORANGE), index.search("range", 10));
+	}
+
+	@Test
+	void testProductsMatchingMoreTokensRankHigher() {
+		assertEquals(List.of(APPLE, ORANGE, APPLE_PIE), index.search("fruits apple", 10));
+	}
+
+	@Test
+	void testLimitAndMisses() {
+		assertEquals(List.of(APPLE), index.search("apple", 1));
+		assertTrue(index.search("xyz", 10).isEmpty());
+		assertTrue(index.search("  ", 10).isEmpty());
+	}
+}